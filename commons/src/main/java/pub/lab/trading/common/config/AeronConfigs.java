@@ -11,6 +11,7 @@ public class AeronConfigs {
     public static final String LIVE_CHANNEL = "aeron:ipc";
     public static final String PUBLISH_CONFIG_CHANNEL = "aeron:ipc?endpoint=config-service|session-id=1001";
     public static final String REPLAY_CONFIG_CHANNEL = "aeron:ipc?endpoint=config-service";
+    public static final String REPLAY_TICK_BACKFILL_CHANNEL = "aeron:ipc?endpoint=tick-backfill";
     public static final String BOOTSTRAP_CHANNEL = "aeron:ipc?endpoint=bootstrap-service";
 
     private AeronConfigs() {
@@ -12,12 +12,19 @@ public enum StreamId {
     CONTROL_RAW_QUOTE(2000),
     CONTROL_MARKET_QUOTE(3000),
     CONTROL_CLIENT_QUOTE(4000),
+    CONTROL_VENUE_TICK(5000),
+    CONTROL_JOURNAL_REPLAY(8000),
 
     // Control Streams
     DATA_CONFIG_STREAM(1100),
     DATA_RAW_QUOTE(2100),
     DATA_MARKET_QUOTE(3100),
     DATA_CLIENT_QUOTE(4100),
+    DATA_VENUE_TICK(5100),
+    DATA_GOLDEN_TICK(6100),
+    DATA_ORDER_BOOK(7100),
+    DATA_JOURNAL_REPLAY(8100),
+    DATA_TICK_BACKFILL(9100),
 
     NONE(-1); // end of streams
 
@@ -6,6 +6,7 @@ import play.lab.model.sbe.MessageHeaderEncoder;
 import play.lab.model.sbe.QuoteMessageEncoder;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
 public class QuoteMessageWriter {
     private static final int MAX_LEVELS = 10;
@@ -24,6 +25,9 @@ public class QuoteMessageWriter {
         this.rungCounter = 0;
     }
 
+    /**
+     * @param timestamp priceCreationTimestamp, epoch nanos
+     */
     public QuoteMessageWriter beginQuote(CurrencyPair symbol, long valueDate, long timestamp, int tenor, long clientTier, int totalRungCount) {
         if (totalRungCount > MAX_LEVELS) {
             throw new IllegalArgumentException("Total rung count (" + totalRungCount + ") exceeds maximum (" + MAX_LEVELS + ")");
@@ -66,7 +70,7 @@ public class QuoteMessageWriter {
 
     // Convenience method for QuotePublisher
     public QuoteMessageWriter write(CurrencyPair pair, double bid, double ask) {
-        return beginQuote(pair, 0L, System.currentTimeMillis(), 0, 0L, 1)
+        return beginQuote(pair, 0L, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()), 0, 0L, 1)
                 .addRung(bid, ask, 1_000_000.0); // Default volume
     }
 }
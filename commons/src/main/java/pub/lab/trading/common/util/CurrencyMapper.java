@@ -49,17 +49,24 @@ public class CurrencyMapper {
         TERM_MAP[pair.value()] = (byte) term.value();
     }
 
+    /**
+     * True when the pair has a base and term currency mapped.
+     */
+    public static boolean isMapped(int pairValue) {
+        return (BASE_MAP[pairValue & 0xFF] & 0xFF) != Currency.NULL_VAL.value();
+    }
+
     /**
      * Returns the Base currency code for a given Pair value.
      */
     public static Currency getBase(int pairValue) {
-        return Currency.get(BASE_MAP[pairValue & 0xFF]);
+        return Currency.get((short) (BASE_MAP[pairValue & 0xFF] & 0xFF));
     }
 
     /**
      * Returns the Term (Quote) currency code for a given Pair value.
      */
     public static Currency getTerm(int pairValue) {
-        return Currency.get(TERM_MAP[pairValue & 0xFF]);
+        return Currency.get((short) (TERM_MAP[pairValue & 0xFF] & 0xFF));
     }
 }
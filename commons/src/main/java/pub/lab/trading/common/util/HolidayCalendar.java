@@ -1,11 +1,41 @@
 package pub.lab.trading.common.util;
 
+import pub.lab.trading.common.model.Tenor;
+
 import java.time.LocalDate;
 
 public class HolidayCalendar {
 
+    private static final int SPOT_LAG_DAYS = 2;
+
     // TODO - Get config service to publish value dates for different ccyPairs
     public static long getValueDate() {
-        return LocalDate.now().plusDays(2).toEpochDay();
+        return getValueDate(LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * Spot value date for a given trade date, both as epoch days. Allocation free, so it can be used
+     * when the trade date comes from a simulated clock rather than the wall clock.
+     */
+    public static long getValueDate(long tradeDateEpochDay) {
+        return tradeDateEpochDay + SPOT_LAG_DAYS;
+    }
+
+    /**
+     * Value date of {@code tenor} for a given trade date, as epoch days. Month and year tenors roll from spot
+     * on the calendar, so this allocates; callers compute the ladder once per trade date, not per tick.
+     */
+    public static long getValueDate(Tenor tenor, long tradeDateEpochDay) {
+        long spot = getValueDate(tradeDateEpochDay);
+        return switch (tenor) {
+            case TODAY -> tradeDateEpochDay;
+            case TOM -> tradeDateEpochDay + 1;
+            case SPOT -> spot;
+            case ONE_WEEK, TWO_WEEKS -> spot + tenor.getCode();
+            case ONE_MONTH -> LocalDate.ofEpochDay(spot).plusMonths(1).toEpochDay();
+            case THREE_MONTHS -> LocalDate.ofEpochDay(spot).plusMonths(3).toEpochDay();
+            case SIX_MONTHS -> LocalDate.ofEpochDay(spot).plusMonths(6).toEpochDay();
+            case ONE_YEAR -> LocalDate.ofEpochDay(spot).plusYears(1).toEpochDay();
+        };
     }
 }
@@ -0,0 +1,21 @@
+package pub.lab.trading.common.util;
+
+/**
+ * Fixed point convention for the int64 {@code Price} fields in market-data-model.xml (VenueTick, GoldenTick,
+ * OrderBookSnapshot): price * 10^6, enough for JPY pairs at 3 decimals and majors at 5 with sub-pip room.
+ */
+public class PriceScale {
+    public static final long SCALE = 1_000_000L;
+
+    private PriceScale() {
+        // utility class
+    }
+
+    public static long toScaled(double price) {
+        return Math.round(price * SCALE);
+    }
+
+    public static double toDouble(long scaledPrice) {
+        return (double) scaledPrice / SCALE;
+    }
+}
@@ -2,6 +2,7 @@ package play.lab.config.service;
 
 import com.vaadin.flow.component.UI;
 import io.aeron.Aeron;
+import io.aeron.Publication;
 import io.aeron.Subscription;
 import io.aeron.archive.client.AeronArchive;
 import io.aeron.archive.client.RecordingDescriptorConsumer;
@@ -17,6 +18,10 @@ import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import play.lab.marketdata.model.MarketDataTick;
 import play.lab.model.sbe.ClientTierConfigMessageEncoder;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.GeneratorAction;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.RawQuoteGeneratorControlEncoder;
 import pub.lab.trading.common.config.AeronConfigs;
 import pub.lab.trading.common.config.StreamId;
 import pub.lab.trading.common.lifecycle.MultiStreamPoller;
@@ -53,8 +58,14 @@ public class AeronService {
     private final List<PriceUpdateListener> priceListeners = new CopyOnWriteArrayList<>();
 
     private final CountDownLatch aeronStarted;
+    private final AtomicLong controlCorrelationId = new AtomicLong();
     private ConfigUpdatePoller configUpdatePoller;
     private Subscription marketDataSubscription;
+    private volatile Publication generatorControlPublication;
+    // reused across sends, sendGeneratorControl is synchronized as every UI session may call it
+    private final UnsafeBuffer generatorControlBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(128));
+    private final MessageHeaderEncoder generatorControlHeaderEncoder = new MessageHeaderEncoder();
+    private final RawQuoteGeneratorControlEncoder generatorControlEncoder = new RawQuoteGeneratorControlEncoder();
 
     public AeronService(CountDownLatch aeronStarted) {
         this.aeronStarted = aeronStarted;
@@ -107,6 +118,45 @@ public class AeronService {
         LOGGER.info("Enqueued for publishing: {}", clientTierConfigMessageEncoder);
     }
 
+    /**
+     * Sends a runtime change to the market-data FxPriceGenerator over CONTROL_RAW_QUOTE.
+     *
+     * @return true if Aeron accepted the message
+     */
+    public synchronized boolean sendGeneratorControl(final GeneratorAction action,
+                                        final CurrencyPair symbol,
+                                        final double initialPrice,
+                                        final double volatility,
+                                        final double spreadBps,
+                                        final int ticksPerSecond) {
+        final Publication publication = generatorControlPublication;
+        if (publication == null) {
+            LOGGER.warn("Generator control publication not ready, dropping {} {}", action, symbol);
+            return false;
+        }
+
+        final UnsafeBuffer buffer = generatorControlBuffer;
+        final MessageHeaderEncoder headerEncoder = generatorControlHeaderEncoder;
+        final RawQuoteGeneratorControlEncoder encoder = generatorControlEncoder;
+        encoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                .tsNanos(System.currentTimeMillis() * 1_000_000L)
+                .correlationId(controlCorrelationId.incrementAndGet())
+                .action(action)
+                .symbol(symbol)
+                .initialPrice(initialPrice)
+                .volatility(volatility)
+                .spreadBps(spreadBps)
+                .ticksPerSecond(ticksPerSecond);
+
+        long result = publication.offer(buffer, 0, headerEncoder.encodedLength() + encoder.encodedLength());
+        if (result < 0) {
+            LOGGER.error("Failed to send generator control {} {} — code {}", action, symbol, result);
+            return false;
+        }
+        LOGGER.info("Sent generator control: {}", encoder);
+        return true;
+    }
+
     public Set<ClientTierFlyweight> getCachedTiers() {
         synchronized (cache) {
             return new HashSet<>(cache);
@@ -127,6 +177,9 @@ public class AeronService {
                 Subscription marketDataSub = aeron.addSubscription(
                         AeronConfigs.LIVE_CHANNEL,
                         StreamId.DATA_RAW_QUOTE.getCode());
+                Publication generatorControlPub = aeron.addPublication(
+                        AeronConfigs.LIVE_CHANNEL,
+                        StreamId.CONTROL_RAW_QUOTE.getCode());
                 AgentRunner agentRunner = new AgentRunner(new BackoffIdleStrategy(),
                         Throwable::printStackTrace,
                         null,
@@ -140,6 +193,7 @@ public class AeronService {
         ) {
             this.configUpdatePoller = configUpdatePoller;
             this.marketDataSubscription = marketDataSub;
+            this.generatorControlPublication = generatorControlPub;
             AgentRunner.startOnThread(agentRunner);
             LOGGER.info("Started {}", agentRunner.agent());
 
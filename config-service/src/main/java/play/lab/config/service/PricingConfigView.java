@@ -13,6 +13,8 @@ import com.vaadin.flow.data.provider.ListDataProvider;
 import com.vaadin.flow.component.DetachEvent;
 import play.lab.config.service.components.EditableConfigRow;
 import play.lab.marketdata.model.MarketDataTick;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.GeneratorAction;
 
 import java.util.ArrayList;
 
@@ -33,6 +35,15 @@ public class PricingConfigView extends VerticalLayout implements PriceUpdateList
 
         NumberField throttleField = new NumberField("Ticks/sec");
         throttleField.setStep(100);
+        throttleField.addValueChangeListener(e -> {
+            Double ticksPerSecond = e.getValue();
+            if (ticksPerSecond == null || ticksPerSecond < 1) {
+                return;
+            }
+            boolean sent = aeronService.sendGeneratorControl(GeneratorAction.SET_TICK_RATE, CurrencyPair.NULL_VAL,
+                    0, 0, 0, ticksPerSecond.intValue());
+            Notification.show(sent ? "Tick rate set to " + ticksPerSecond.intValue() : "Failed to send tick rate");
+        });
         add(throttleField, grid);
 
         symbolField.setPlaceholder("e.g. USDJPY");
@@ -66,6 +77,18 @@ public class PricingConfigView extends VerticalLayout implements PriceUpdateList
                 return;
             }
 
+            CurrencyPair pair;
+            try {
+                pair = CurrencyPair.valueOf(symbol);
+            } catch (IllegalArgumentException ex) {
+                Notification.show("Unknown symbol: " + symbol);
+                return;
+            }
+
+            if (!aeronService.sendGeneratorControl(GeneratorAction.ADD_SYMBOL, pair, price, vol, spread, 0)) {
+                Notification.show("Failed to add: " + symbol);
+                return;
+            }
             refreshGrid();
             Notification.show("Added: " + symbol);
 
@@ -0,0 +1,329 @@
+package pub.lab.trading.feedhandler;
+
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.MessageHeaderDecoder;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.VenueHeartbeatEncoder;
+import play.lab.model.sbe.VenueID;
+import play.lab.model.sbe.VenueRefreshRequestDecoder;
+import play.lab.model.sbe.VenueTickEncoder;
+import pub.lab.trading.common.lifecycle.Worker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for a venue feed handler: owns the TCP session to one venue, frames its byte stream and normalizes each venue
+ * message straight into the ticker plant's ingress ring buffer. The VenueTick is encoded in the slot taken with
+ * {@code tryClaim} and published with {@code commit}, no intermediate buffer and no copy.
+ * <p>
+ * One handler per venue, each on its own thread; the ring buffer is many-to-one so handlers never coordinate. A
+ * claim that fails because the plant is behind drops the tick, and its venueSeqNum shows up at the plant as a gap.
+ * The plant then asks for a refresh on the venue control stream, which a handler given that subscription passes on
+ * to its venue. Subclasses implement the venue's wire protocol.
+ */
+public abstract class FeedHandler implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedHandler.class);
+
+    private static final long RECONNECT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int RECEIVE_BUFFER_CAPACITY = 64 * 1024;
+    private static final int SEND_BUFFER_CAPACITY = 256;
+    private static final int TICK_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + VenueTickEncoder.BLOCK_LENGTH;
+    private static final int HEARTBEAT_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + VenueHeartbeatEncoder.BLOCK_LENGTH;
+
+    protected final VenueID venueId;
+    protected final EpochNanoClock clock;
+    private final InetSocketAddress address;
+    private final ManyToOneRingBuffer ingress;
+    private final int msgTypeId;
+    private final Subscription controlSubscription;
+
+    private final ByteBuffer receiveByteBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_CAPACITY);
+    private final UnsafeBuffer receiveBuffer = new UnsafeBuffer(receiveByteBuffer);
+    private final ByteBuffer sendByteBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_CAPACITY);
+    private final UnsafeBuffer sendBuffer = new UnsafeBuffer(sendByteBuffer);
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final VenueTickEncoder tickEncoder = new VenueTickEncoder();
+    private final VenueHeartbeatEncoder heartbeatEncoder = new VenueHeartbeatEncoder();
+    private final MessageHeaderDecoder controlHeaderDecoder = new MessageHeaderDecoder();
+    private final VenueRefreshRequestDecoder refreshRequestDecoder = new VenueRefreshRequestDecoder();
+    private final FragmentHandler controlHandler = this::onControl;
+
+    private SocketChannel channel;
+    private boolean connected;
+    private long nextConnectNanos;
+    private long ingressNanos;
+
+    private long ticks;
+    private long heartbeats;
+    private long droppedMessages;
+    private long refreshRequests;
+    private long malformedFrames;
+    private long connects;
+
+    /**
+     * @param ingress             the ticker plant's ingress queue
+     * @param msgTypeId           ring buffer message type the plant reads venue messages as
+     * @param controlSubscription venue control stream carrying the plant's refresh requests, null to ignore them
+     */
+    protected FeedHandler(final VenueID venueId,
+                          final InetSocketAddress address,
+                          final ManyToOneRingBuffer ingress,
+                          final int msgTypeId,
+                          final Subscription controlSubscription,
+                          final EpochNanoClock clock) {
+        this.venueId = venueId;
+        this.address = address;
+        this.ingress = ingress;
+        this.msgTypeId = msgTypeId;
+        this.controlSubscription = controlSubscription;
+        this.clock = clock;
+    }
+
+    /**
+     * Bytes needed at the start of a frame to know its length.
+     */
+    protected abstract int frameHeaderLength();
+
+    /**
+     * Length of the frame starting at {@code offset}, header included.
+     */
+    protected abstract int frameLength(DirectBuffer buffer, int offset);
+
+    /**
+     * Normalizes one complete venue frame through {@link #publishTick} or {@link #publishHeartbeat}.
+     */
+    protected abstract void onFrame(DirectBuffer buffer, int offset, int length);
+
+    /**
+     * Encodes the venue's request to resend its full top of book and returns its length.
+     */
+    protected abstract int encodeRefreshRequest(MutableDirectBuffer buffer);
+
+    @Override
+    public int doWork() {
+        long now = System.nanoTime();
+        if (channel == null) {
+            return now >= nextConnectNanos ? connect(now) : 0;
+        }
+        if (!connected) {
+            return finishConnect(now);
+        }
+        int workCount = receive(now);
+        if (controlSubscription != null) {
+            workCount += controlSubscription.poll(controlHandler, 10);
+        }
+        return workCount;
+    }
+
+    private int connect(long now) {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connected = channel.connect(address);
+            if (connected) {
+                onConnected();
+            }
+        } catch (IOException e) {
+            disconnect(now, e);
+        }
+        return 1;
+    }
+
+    private int finishConnect(long now) {
+        try {
+            if (!channel.finishConnect()) {
+                return 0;
+            }
+            connected = true;
+            onConnected();
+            return 1;
+        } catch (IOException e) {
+            disconnect(now, e);
+            return 0;
+        }
+    }
+
+    private void onConnected() {
+        connects++;
+        receiveByteBuffer.clear();
+        LOGGER.info("{} connected to {}", venueId, address);
+    }
+
+    private void disconnect(long now, IOException cause) {
+        if (connected) {
+            LOGGER.warn("{} lost session with {}: {}", venueId, address, cause == null ? "closed by venue" : cause.getMessage());
+        }
+        CloseHelper.quietClose(channel);
+        channel = null;
+        connected = false;
+        nextConnectNanos = now + RECONNECT_INTERVAL_NANOS;
+    }
+
+    private int receive(long now) {
+        int bytesRead;
+        try {
+            bytesRead = channel.read(receiveByteBuffer);
+        } catch (IOException e) {
+            disconnect(now, e);
+            return 0;
+        }
+        if (bytesRead < 0) {
+            disconnect(now, null);
+            return 0;
+        }
+        if (bytesRead == 0) {
+            return 0;
+        }
+        ingressNanos = clock.nanoTime();
+
+        int limit = receiveByteBuffer.position();
+        int offset = 0;
+        int frames = 0;
+        while (limit - offset >= frameHeaderLength()) {
+            int length = frameLength(receiveBuffer, offset);
+            if (length < frameHeaderLength() || length > RECEIVE_BUFFER_CAPACITY) {
+                malformedFrames++;
+                disconnect(now, new IOException("bad frame length " + length));
+                return frames;
+            }
+            if (limit - offset < length) {
+                break;
+            }
+            onFrame(receiveBuffer, offset, length);
+            offset += length;
+            frames++;
+        }
+        receiveByteBuffer.limit(limit).position(offset);
+        receiveByteBuffer.compact();
+        return frames;
+    }
+
+    /**
+     * Encodes a VenueTick in place in the ingress ring buffer; counts and drops it when the buffer is full.
+     */
+    protected void publishTick(long securityId, long venueSeqNum, long venueTime,
+                               long bidPrice, long bidSize, long askPrice, long askSize) {
+        int index = ingress.tryClaim(msgTypeId, TICK_LENGTH);
+        if (index < 0) {
+            droppedMessages++;
+            return;
+        }
+        tickEncoder.wrapAndApplyHeader(ingress.buffer(), index, headerEncoder)
+                .venueId(venueId)
+                .securityId(securityId)
+                .venueSeqNum(venueSeqNum)
+                .venueTime(venueTime)
+                .ingressTime(ingressNanos)
+                .bidPrice(bidPrice)
+                .bidSize(bidSize)
+                .askPrice(askPrice)
+                .askSize(askSize);
+        ingress.commit(index);
+        ticks++;
+    }
+
+    protected void publishHeartbeat(long lastVenueSeqNum, long venueTime) {
+        int index = ingress.tryClaim(msgTypeId, HEARTBEAT_LENGTH);
+        if (index < 0) {
+            droppedMessages++;
+            return;
+        }
+        heartbeatEncoder.wrapAndApplyHeader(ingress.buffer(), index, headerEncoder)
+                .venueId(venueId)
+                .venueSeqNum(lastVenueSeqNum)
+                .venueTime(venueTime)
+                .ingressTime(ingressNanos);
+        ingress.commit(index);
+        heartbeats++;
+    }
+
+    protected void onMalformedFrame() {
+        malformedFrames++;
+    }
+
+    private void onControl(DirectBuffer buffer, int offset, int length, Header header) {
+        controlHeaderDecoder.wrap(buffer, offset);
+        if (controlHeaderDecoder.templateId() != VenueRefreshRequestDecoder.TEMPLATE_ID
+                || controlHeaderDecoder.schemaId() != VenueRefreshRequestDecoder.SCHEMA_ID) {
+            return;
+        }
+        refreshRequestDecoder.wrapAndApplyHeader(buffer, offset, controlHeaderDecoder);
+        if (refreshRequestDecoder.venueIdRaw() == venueId.value()) {
+            requestRefresh();
+        }
+    }
+
+    /**
+     * Asks the venue to resend its full top of book, on the plant's request after a gap.
+     */
+    public void requestRefresh() {
+        if (!connected) {
+            return; // a new session starts from a full book anyway
+        }
+        int length = encodeRefreshRequest(sendBuffer);
+        sendByteBuffer.limit(length).position(0);
+        try {
+            while (sendByteBuffer.hasRemaining()) {
+                channel.write(sendByteBuffer);
+            }
+            refreshRequests++;
+        } catch (IOException e) {
+            disconnect(System.nanoTime(), e);
+        }
+    }
+
+    public long ticks() {
+        return ticks;
+    }
+
+    public long heartbeats() {
+        return heartbeats;
+    }
+
+    /**
+     * Messages lost because the ingress ring buffer was full.
+     */
+    public long droppedMessages() {
+        return droppedMessages;
+    }
+
+    public long refreshRequests() {
+        return refreshRequests;
+    }
+
+    public long malformedFrames() {
+        return malformedFrames;
+    }
+
+    public long connects() {
+        return connects;
+    }
+
+    @Override
+    public void onClose() {
+        LOGGER.info("{} feed handler ticks={} heartbeats={} dropped={} refreshRequests={} malformed={} connects={}",
+                venueId, ticks, heartbeats, droppedMessages, refreshRequests, malformedFrames, connects);
+        CloseHelper.quietClose(channel);
+    }
+
+    @Override
+    public String roleName() {
+        return "feed-handler-" + venueId;
+    }
+}
@@ -0,0 +1,123 @@
+package pub.lab.trading.feedhandler;
+
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.Subscription;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.VenueID;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.lifecycle.AgentAffinityLocker;
+import pub.lab.trading.common.util.CachedClock;
+import pub.lab.trading.ticketplant.TickerPlantLauncher;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end load test of the ingest path: a {@link SimulatedVenue} per venue on localhost, a
+ * {@link SimVenueFeedHandler} per venue on its own thread, all writing into one in-process ticker plant's ingress
+ * ring buffer. The plant publishes GoldenTicks and depth as usual and sends refresh requests on the venue control
+ * stream, which the handlers pass on to their venue.
+ * <pre>
+ * -Dfeedhandler.venues=EBS,REUTERS,CURRENEX  venues to simulate
+ * -Dfeedhandler.basePort=9101                first venue's port, the others follow
+ * -Dfeedhandler.quoteIntervalMicros=100      per venue, 0 to quote as fast as the handler reads
+ * -Dfeedhandler.remote=true                  connect to venues already listening instead of simulating them
+ * </pre>
+ */
+public class FeedHandlerLauncher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedHandlerLauncher.class);
+
+    public static void main(String[] args) {
+        final String[] venues = System.getProperty("feedhandler.venues", "EBS,REUTERS,CURRENEX").split(",");
+        final int basePort = Integer.getInteger("feedhandler.basePort", 9101);
+        final long quoteIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("feedhandler.quoteIntervalMicros", 100L));
+        final long heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("feedhandler.heartbeatMillis", 500L));
+        final boolean remote = Boolean.getBoolean("feedhandler.remote");
+        final long seed = Long.getLong("feedhandler.seed", System.nanoTime());
+        final String journalDir = System.getProperty("tickerplant.journal.dir", "journal");
+        final int cpuId = Integer.getInteger("tickerplant.cpu", -1);
+        LOGGER.info("Application Starting Up");
+        final List<AgentRunner> runners = new ArrayList<>();
+        try (
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                Publication goldenTickPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_GOLDEN_TICK.getCode());
+                Publication orderBookPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_ORDER_BOOK.getCode());
+                Publication venueControlPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.CONTROL_VENUE_TICK.getCode())
+        ) {
+            final TickerPlantLauncher tickerPlant = new TickerPlantLauncher(
+                    goldenTickPub,
+                    orderBookPub,
+                    venueControlPub,
+                    new CachedClock(),
+                    journalDir,
+                    Integer.getInteger("tickerplant.ingress.batchSize", 10));
+            tickerPlant.startReplayServer(aeron);
+
+            for (int i = 0; i < venues.length; i++) {
+                final VenueID venueId = VenueID.valueOf(venues[i].trim());
+                final int port = basePort + i;
+                if (!remote) {
+                    runners.add(start(new SimulatedVenue(venueId.name(), port, new SystemEpochNanoClock(),
+                            quoteIntervalNanos, heartbeatIntervalNanos, seed + i)
+                            .addSymbol(CurrencyPair.EURUSD, 1.1000, 0.018, 0.5)
+                            .addSymbol(CurrencyPair.USDJPY, 145.00, 0.030, 1.0)
+                            .addSymbol(CurrencyPair.GBPUSD, 1.2500, 0.025, 0.6)
+                            .addSymbol(CurrencyPair.USDCHF, 0.8800, 0.017, 0.5)
+                            .addSymbol(CurrencyPair.AUDUSD, 0.6600, 0.028, 0.6)
+                            .addSymbol(CurrencyPair.NZDUSD, 0.6000, 0.030, 0.7)
+                            .addSymbol(CurrencyPair.USDCAD, 1.3600, 0.022, 0.5)
+                            .addSymbol(CurrencyPair.EURJPY, 158.00, 0.025, 1.0)
+                            .addSymbol(CurrencyPair.EURGBP, 0.8800, 0.017, 0.6)
+                            .addSymbol(CurrencyPair.EURCHF, 0.9700, 0.015, 0.5)));
+                }
+                final Subscription controlSub = aeron.addSubscription(AeronConfigs.LIVE_CHANNEL, StreamId.CONTROL_VENUE_TICK.getCode());
+                runners.add(start(new SimVenueFeedHandler(
+                        venueId,
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                        tickerPlant.getIngressQueue(),
+                        TickerPlantLauncher.VENUE_TICK_MESSAGE_TYPE,
+                        controlSub,
+                        new SystemEpochNanoClock())));
+            }
+
+            try (
+                    AgentRunner plantRunner = new AgentRunner(new BusySpinIdleStrategy(),
+                            Throwable::printStackTrace,
+                            null,
+                            tickerPlant);
+                    var barrier = new ShutdownSignalBarrier()
+            ) {
+                new Thread(() -> AgentAffinityLocker.pin(plantRunner, cpuId), tickerPlant.roleName()).start();
+                LOGGER.info("Started {} with {} feed handlers, quoteIntervalNanos={} seed={}",
+                        tickerPlant.roleName(), venues.length, quoteIntervalNanos, seed);
+                barrier.await();
+                LOGGER.info("Shutting down");
+                // stop the producers before the plant they write into
+                for (int i = runners.size() - 1; i >= 0; i--) {
+                    CloseHelper.quietClose(runners.get(i));
+                }
+            }
+        }
+        LOGGER.info("Application Stopped");
+    }
+
+    private static AgentRunner start(final Agent agent) {
+        final AgentRunner runner = new AgentRunner(new BackoffIdleStrategy(), Throwable::printStackTrace, null, agent);
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+}
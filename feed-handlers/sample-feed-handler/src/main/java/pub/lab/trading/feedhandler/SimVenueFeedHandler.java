@@ -0,0 +1,90 @@
+package pub.lab.trading.feedhandler;
+
+import io.aeron.Subscription;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.VenueID;
+import pub.lab.trading.common.util.PriceScale;
+
+import java.net.InetSocketAddress;
+
+import static pub.lab.trading.feedhandler.SimVenueProtocol.*;
+
+/**
+ * Feed handler for the {@link SimulatedVenue} protocol: QUOTE to VenueTick with {@code securityId = CurrencyPair.value()}
+ * and prices scaled by {@link PriceScale}, HEARTBEAT to VenueHeartbeat. Symbols are looked up by their packed bytes,
+ * no String per quote.
+ */
+public class SimVenueFeedHandler extends FeedHandler {
+    private static final long UNKNOWN_SYMBOL = -1;
+
+    private final Long2LongHashMap securityIdsBySymbol = new Long2LongHashMap(UNKNOWN_SYMBOL);
+    private long unknownSymbols;
+
+    public SimVenueFeedHandler(final VenueID venueId,
+                               final InetSocketAddress address,
+                               final ManyToOneRingBuffer ingress,
+                               final int msgTypeId,
+                               final Subscription controlSubscription,
+                               final EpochNanoClock clock) {
+        super(venueId, address, ingress, msgTypeId, controlSubscription, clock);
+        for (CurrencyPair pair : CurrencyPair.values()) {
+            if (pair != CurrencyPair.NULL_VAL && pair.name().length() == SYMBOL_LENGTH) {
+                securityIdsBySymbol.put(packSymbol(pair.name()), pair.value());
+            }
+        }
+    }
+
+    @Override
+    protected int frameHeaderLength() {
+        return TYPE_OFFSET + 1;
+    }
+
+    @Override
+    protected int frameLength(DirectBuffer buffer, int offset) {
+        return buffer.getInt(offset + LENGTH_OFFSET);
+    }
+
+    @Override
+    protected void onFrame(DirectBuffer buffer, int offset, int length) {
+        byte type = buffer.getByte(offset + TYPE_OFFSET);
+        if (type == QUOTE && length == QUOTE_LENGTH) {
+            onQuote(buffer, offset);
+        } else if (type == HEARTBEAT && length == HEARTBEAT_LENGTH) {
+            publishHeartbeat(buffer.getLong(offset + SEQ_NUM_OFFSET), buffer.getLong(offset + VENUE_TIME_OFFSET));
+        } else {
+            onMalformedFrame();
+        }
+    }
+
+    private void onQuote(DirectBuffer buffer, int offset) {
+        long securityId = securityIdsBySymbol.get(packSymbol(buffer, offset));
+        if (securityId == UNKNOWN_SYMBOL) {
+            unknownSymbols++;
+            return;
+        }
+        publishTick(securityId,
+                buffer.getLong(offset + SEQ_NUM_OFFSET),
+                buffer.getLong(offset + VENUE_TIME_OFFSET),
+                PriceScale.toScaled(buffer.getDouble(offset + BID_OFFSET)),
+                buffer.getLong(offset + BID_SIZE_OFFSET),
+                PriceScale.toScaled(buffer.getDouble(offset + ASK_OFFSET)),
+                buffer.getLong(offset + ASK_SIZE_OFFSET));
+    }
+
+    @Override
+    protected int encodeRefreshRequest(MutableDirectBuffer buffer) {
+        return encodeRefresh(buffer, 0);
+    }
+
+    /**
+     * Quotes for symbols with no CurrencyPair, dropped.
+     */
+    public long unknownSymbols() {
+        return unknownSymbols;
+    }
+}
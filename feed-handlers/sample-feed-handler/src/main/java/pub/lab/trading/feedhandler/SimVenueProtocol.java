@@ -0,0 +1,108 @@
+package pub.lab.trading.feedhandler;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Wire format of the simulated venue, little endian frames over TCP, each starting with its length and type:
+ * <pre>
+ * QUOTE     venue to handler, 64 bytes
+ *   0 int    length
+ *   4 byte   'Q'
+ *   5 6 byte symbol, ASCII, e.g. EURUSD
+ *  16 long   seqNum
+ *  24 long   venueTime, epoch nanos
+ *  32 double bid
+ *  40 double ask
+ *  48 long   bidSize
+ *  56 long   askSize
+ *
+ * HEARTBEAT venue to handler, 32 bytes
+ *   0 int    length
+ *   4 byte   'H'
+ *  16 long   last seqNum sent
+ *  24 long   venueTime, epoch nanos
+ *
+ * REFRESH   handler to venue, 8 bytes: resend a QUOTE for every symbol
+ *   0 int    length
+ *   4 byte   'R'
+ * </pre>
+ * Quotes and heartbeats share one sequence per session, starting at 1.
+ */
+public final class SimVenueProtocol {
+    public static final byte QUOTE = 'Q';
+    public static final byte HEARTBEAT = 'H';
+    public static final byte REFRESH = 'R';
+
+    public static final int LENGTH_OFFSET = 0;
+    public static final int TYPE_OFFSET = 4;
+    public static final int SYMBOL_OFFSET = 5;
+    public static final int SYMBOL_LENGTH = 6;
+    public static final int SEQ_NUM_OFFSET = 16;
+    public static final int VENUE_TIME_OFFSET = 24;
+    public static final int BID_OFFSET = 32;
+    public static final int ASK_OFFSET = 40;
+    public static final int BID_SIZE_OFFSET = 48;
+    public static final int ASK_SIZE_OFFSET = 56;
+
+    public static final int QUOTE_LENGTH = 64;
+    public static final int HEARTBEAT_LENGTH = 32;
+    public static final int REFRESH_LENGTH = 8;
+    public static final int MAX_FRAME_LENGTH = QUOTE_LENGTH;
+
+    private SimVenueProtocol() {
+        // utility class
+    }
+
+    /**
+     * The six ASCII symbol bytes packed into a long, for allocation-free symbol lookup.
+     */
+    public static long packSymbol(CharSequence symbol) {
+        long packed = 0;
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            packed = (packed << 8) | (symbol.charAt(i) & 0xFF);
+        }
+        return packed;
+    }
+
+    public static long packSymbol(DirectBuffer buffer, int frameOffset) {
+        long packed = 0;
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            packed = (packed << 8) | (buffer.getByte(frameOffset + SYMBOL_OFFSET + i) & 0xFF);
+        }
+        return packed;
+    }
+
+    public static int encodeQuote(MutableDirectBuffer buffer, int offset, CharSequence symbol, long seqNum, long venueTime,
+                                  double bid, double ask, long bidSize, long askSize) {
+        buffer.setMemory(offset, QUOTE_LENGTH, (byte) 0);
+        buffer.putInt(offset + LENGTH_OFFSET, QUOTE_LENGTH);
+        buffer.putByte(offset + TYPE_OFFSET, QUOTE);
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            buffer.putByte(offset + SYMBOL_OFFSET + i, (byte) symbol.charAt(i));
+        }
+        buffer.putLong(offset + SEQ_NUM_OFFSET, seqNum);
+        buffer.putLong(offset + VENUE_TIME_OFFSET, venueTime);
+        buffer.putDouble(offset + BID_OFFSET, bid);
+        buffer.putDouble(offset + ASK_OFFSET, ask);
+        buffer.putLong(offset + BID_SIZE_OFFSET, bidSize);
+        buffer.putLong(offset + ASK_SIZE_OFFSET, askSize);
+        return QUOTE_LENGTH;
+    }
+
+    public static int encodeHeartbeat(MutableDirectBuffer buffer, int offset, long lastSeqNum, long venueTime) {
+        buffer.setMemory(offset, HEARTBEAT_LENGTH, (byte) 0);
+        buffer.putInt(offset + LENGTH_OFFSET, HEARTBEAT_LENGTH);
+        buffer.putByte(offset + TYPE_OFFSET, HEARTBEAT);
+        buffer.putLong(offset + SEQ_NUM_OFFSET, lastSeqNum);
+        buffer.putLong(offset + VENUE_TIME_OFFSET, venueTime);
+        return HEARTBEAT_LENGTH;
+    }
+
+    public static int encodeRefresh(MutableDirectBuffer buffer, int offset) {
+        buffer.setMemory(offset, REFRESH_LENGTH, (byte) 0);
+        buffer.putInt(offset + LENGTH_OFFSET, REFRESH_LENGTH);
+        buffer.putByte(offset + TYPE_OFFSET, REFRESH);
+        return REFRESH_LENGTH;
+    }
+}
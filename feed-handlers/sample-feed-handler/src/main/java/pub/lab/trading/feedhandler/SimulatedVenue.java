@@ -0,0 +1,272 @@
+package pub.lab.trading.feedhandler;
+
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.CurrencyPair;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+
+import static pub.lab.trading.feedhandler.SimVenueProtocol.*;
+
+/**
+ * A venue on localhost for end to end load tests of the feed handlers: serves one TCP session at a time in the
+ * {@link SimVenueProtocol} format, quoting its pairs around a GBM mid at a fixed interval, heartbeating when quiet
+ * and answering REFRESH with a quote for every pair. Each session numbers its messages from 1.
+ * <p>
+ * When the handler reads slower than the venue quotes, generation pauses until the socket drains, like a venue
+ * throttling a slow consumer.
+ */
+public class SimulatedVenue implements Agent {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulatedVenue.class);
+
+    private static final int MAX_PAIRS = 64;
+    private static final int SEND_BUFFER_CAPACITY = 64 * 1024;
+    private static final int MAX_QUOTES_PER_CYCLE = 256;
+    private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+
+    private final String name;
+    private final EpochNanoClock clock;
+    private final long quoteIntervalNanos;
+    private final long heartbeatIntervalNanos;
+    private final SplittableRandom random;
+    private final ServerSocketChannel serverChannel;
+
+    private final ByteBuffer sendByteBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_CAPACITY);
+    private final UnsafeBuffer sendBuffer = new UnsafeBuffer(sendByteBuffer);
+    private final ByteBuffer receiveByteBuffer = ByteBuffer.allocateDirect(1024);
+    private final UnsafeBuffer receiveBuffer = new UnsafeBuffer(receiveByteBuffer);
+
+    private final String[] symbols = new String[MAX_PAIRS];
+    private final double[] mids = new double[MAX_PAIRS];
+    private final double[] volatilities = new double[MAX_PAIRS];
+    private final double[] spreadsBps = new double[MAX_PAIRS];
+    private final long[] lastMoveNanos = new long[MAX_PAIRS];
+    private int pairCount;
+
+    private SocketChannel session;
+    private int sendPosition;
+    private int sendLimit;
+    private long seqNum;
+    private long nextQuoteNanos;
+    private long lastSentNanos;
+    private boolean refreshRequested;
+
+    private long quotes;
+    private long heartbeats;
+    private long refreshes;
+    private long sessions;
+    private long throttledCycles;
+
+    /**
+     * @param quoteIntervalNanos time between quotes, 0 to quote as fast as the session drains
+     * @param seed               seed for prices and sizes, so a load profile can be repeated
+     */
+    public SimulatedVenue(final String name,
+                          final int port,
+                          final EpochNanoClock clock,
+                          final long quoteIntervalNanos,
+                          final long heartbeatIntervalNanos,
+                          final long seed) {
+        this.name = name;
+        this.clock = clock;
+        this.quoteIntervalNanos = quoteIntervalNanos;
+        this.heartbeatIntervalNanos = heartbeatIntervalNanos;
+        this.random = new SplittableRandom(seed);
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen on port " + port + " for venue " + name, e);
+        }
+    }
+
+    public SimulatedVenue addSymbol(CurrencyPair symbol, double initialPrice, double volatility, double spreadBps) {
+        if (pairCount == MAX_PAIRS) {
+            throw new IllegalStateException("Simulated venue supports at most " + MAX_PAIRS + " pairs");
+        }
+        symbols[pairCount] = symbol.name();
+        mids[pairCount] = initialPrice;
+        volatilities[pairCount] = volatility;
+        spreadsBps[pairCount] = spreadBps;
+        pairCount++;
+        return this;
+    }
+
+    public InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int doWork() throws IOException {
+        if (session == null) {
+            return accept();
+        }
+        int workCount = receive();
+        if (session == null) {
+            return workCount;
+        }
+        if (sendPosition < sendLimit) {
+            workCount += send();
+            if (sendPosition < sendLimit) {
+                throttledCycles++;
+                return workCount;
+            }
+        }
+
+        long now = clock.nanoTime();
+        if (refreshRequested) {
+            refreshRequested = false;
+            refreshes++;
+            for (int p = 0; p < pairCount; p++) {
+                appendQuote(p, now);
+            }
+        }
+        int generated = 0;
+        while (pairCount > 0 && now >= nextQuoteNanos && generated < MAX_QUOTES_PER_CYCLE) {
+            appendQuote(random.nextInt(pairCount), now);
+            nextQuoteNanos += quoteIntervalNanos;
+            generated++;
+        }
+        if (sendLimit == 0 && now - lastSentNanos >= heartbeatIntervalNanos) {
+            sendLimit += encodeHeartbeat(sendBuffer, sendLimit, seqNum, now);
+            lastSentNanos = now;
+            heartbeats++;
+        }
+        if (sendLimit > 0) {
+            workCount += send();
+        }
+        return workCount + generated;
+    }
+
+    private int accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return 0;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        session = channel;
+        sessions++;
+        seqNum = 0;
+        sendPosition = 0;
+        sendLimit = 0;
+        receiveByteBuffer.clear();
+        nextQuoteNanos = clock.nanoTime();
+        lastSentNanos = nextQuoteNanos;
+        refreshRequested = true; // a new session starts from the full book
+        LOGGER.info("Venue {} session from {}", name, channel.getRemoteAddress());
+        return 1;
+    }
+
+    private void appendQuote(int p, long now) {
+        double vol = volatilities[p];
+        double dtYears = (now - lastMoveNanos[p]) / 1e9 / SECONDS_PER_YEAR;
+        if (lastMoveNanos[p] != 0 && dtYears > 0) {
+            mids[p] *= Math.exp(-0.5 * vol * vol * dtYears + vol * Math.sqrt(dtYears) * random.nextGaussian());
+        }
+        lastMoveNanos[p] = now;
+        double halfSpread = mids[p] * spreadsBps[p] / 20_000;
+        double skew = halfSpread * (random.nextDouble() - 0.5);
+        sendLimit += encodeQuote(sendBuffer, sendLimit, symbols[p], ++seqNum, now,
+                mids[p] - halfSpread + skew, mids[p] + halfSpread + skew,
+                1_000_000L * (1 + random.nextInt(10)), 1_000_000L * (1 + random.nextInt(10)));
+        lastSentNanos = now;
+        quotes++;
+    }
+
+    private int receive() {
+        int bytesRead;
+        try {
+            bytesRead = session.read(receiveByteBuffer);
+        } catch (IOException e) {
+            closeSession(e.getMessage());
+            return 0;
+        }
+        if (bytesRead < 0) {
+            closeSession("closed by handler");
+            return 0;
+        }
+        int limit = receiveByteBuffer.position();
+        int offset = 0;
+        while (limit - offset >= REFRESH_LENGTH) {
+            int length = receiveBuffer.getInt(offset + LENGTH_OFFSET);
+            if (length != REFRESH_LENGTH || receiveBuffer.getByte(offset + TYPE_OFFSET) != REFRESH) {
+                closeSession("unexpected frame of length " + length);
+                return 0;
+            }
+            refreshRequested = true;
+            offset += length;
+        }
+        receiveByteBuffer.limit(limit).position(offset);
+        receiveByteBuffer.compact();
+        return bytesRead;
+    }
+
+    private int send() {
+        sendByteBuffer.limit(sendLimit).position(sendPosition);
+        int written;
+        try {
+            written = session.write(sendByteBuffer);
+        } catch (IOException e) {
+            closeSession(e.getMessage());
+            return 0;
+        }
+        sendPosition += written;
+        if (sendPosition == sendLimit) {
+            sendPosition = 0;
+            sendLimit = 0;
+        }
+        return written > 0 ? 1 : 0;
+    }
+
+    private void closeSession(String reason) {
+        LOGGER.info("Venue {} session closed: {}", name, reason);
+        CloseHelper.quietClose(session);
+        session = null;
+    }
+
+    public long quotes() {
+        return quotes;
+    }
+
+    public long heartbeats() {
+        return heartbeats;
+    }
+
+    /**
+     * Duty cycles spent waiting for the session to drain instead of quoting.
+     */
+    public long throttledCycles() {
+        return throttledCycles;
+    }
+
+    @Override
+    public void onClose() {
+        LOGGER.info("Venue {} quotes={} heartbeats={} refreshes={} sessions={} throttledCycles={}",
+                name, quotes, heartbeats, refreshes, sessions, throttledCycles);
+        CloseHelper.quietClose(session);
+        CloseHelper.quietClose(serverChannel);
+    }
+
+    @Override
+    public String roleName() {
+        return "simulated-venue-" + name;
+    }
+}
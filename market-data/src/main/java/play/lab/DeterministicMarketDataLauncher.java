@@ -0,0 +1,69 @@
+package play.lab;
+
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.marketdata.generator.ForwardCurve;
+import play.lab.marketdata.generator.FxPriceGenerator;
+import play.lab.marketdata.generator.QuotePublisher;
+import play.lab.marketdata.generator.SymbolUniverse;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.util.ControlledCachedClock;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a fixed window of synthetic ticks on {@link StreamId#DATA_RAW_QUOTE} as fast as the subscriber
+ * drains them, driven by a {@link ControlledCachedClock} instead of wall time.
+ * <p>
+ * Same seed, trade date and duration give the same quote stream byte for byte; the digest logged at the end
+ * lets two runs be compared without capturing the stream.
+ * <pre>
+ * -Dmarketdata.seed=42 -Dmarketdata.tradeDate=2026-01-05 -Dmarketdata.durationHours=24 -Dmarketdata.forwards=true
+ * </pre>
+ */
+public class DeterministicMarketDataLauncher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeterministicMarketDataLauncher.class);
+
+    public static void main(String[] args) {
+        final long seed = Long.getLong("marketdata.seed", 42L);
+        final LocalDate tradeDate = LocalDate.parse(System.getProperty("marketdata.tradeDate", "2026-01-05"));
+        final long durationNanos = TimeUnit.HOURS.toNanos(Long.getLong("marketdata.durationHours", 24L));
+
+        final long startNanos = TimeUnit.DAYS.toNanos(tradeDate.toEpochDay());
+        final long endNanos = startNanos + durationNanos;
+        final ControlledCachedClock clock = new ControlledCachedClock(startNanos);
+
+        LOGGER.info("Deterministic run seed={} tradeDate={} durationNanos={}", seed, tradeDate, durationNanos);
+        try (
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                Publication quotePub = aeron.addPublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_RAW_QUOTE.getCode())
+        ) {
+            final QuotePublisher publisher = new QuotePublisher(quotePub, true, true);
+            final FxPriceGenerator generator = FxPriceGenerator.deterministic(clock, publisher, SymbolUniverse.load(), seed);
+            if (Boolean.parseBoolean(System.getProperty("marketdata.forwards", "false"))) {
+                generator.enableForwards(ForwardCurve.defaultCurve());
+            }
+
+            clock.start();
+            final long wallStart = System.nanoTime();
+            long cycles = 0;
+            while (clock.nanoTime() < endNanos) {
+                generator.doWork();
+                cycles++;
+            }
+            clock.stop();
+            final long wallNanos = System.nanoTime() - wallStart;
+
+            LOGGER.info("Generated cycles={} quotes={} in {} ms ({} quotes/s), digest={}",
+                    cycles,
+                    publisher.publishedCount(),
+                    TimeUnit.NANOSECONDS.toMillis(wallNanos),
+                    publisher.publishedCount() * 1_000_000_000L / Math.max(1, wallNanos),
+                    Long.toHexString(publisher.digest()));
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package play.lab;
 
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.Subscription;
 import org.agrona.concurrent.AgentRunner;
 import org.agrona.concurrent.BusySpinIdleStrategy;
 import org.agrona.concurrent.ShutdownSignalBarrier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import play.lab.marketdata.generator.ForwardCurve;
 import play.lab.marketdata.generator.FxPriceGenerator;
+import play.lab.marketdata.generator.GeneratorControlPoller;
+import play.lab.marketdata.generator.QuotePublisher;
+import play.lab.marketdata.generator.SymbolUniverse;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
 import pub.lab.trading.common.lifecycle.MultiStreamPoller;
 import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.util.CachedClock;
@@ -16,21 +25,32 @@ public class MarketDataAppLauncher {
     public static void main(String[] args) {
         LOGGER.info("Application Starting Up");
         try (
-                AgentRunner agentRunner = new AgentRunner(new BusySpinIdleStrategy(),
-                        Throwable::printStackTrace,
-                        null,
-                        new MultiStreamPoller(
-                                "pricing-engine-poller",
-                                new Worker[]{
-                                        new FxPriceGenerator(new CachedClock())
-                                }
-                        ));
-                var barrier = new ShutdownSignalBarrier()
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                Publication quotePub = aeron.addPublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_RAW_QUOTE.getCode());
+                Subscription controlSub = aeron.addSubscription(AeronConfigs.LIVE_CHANNEL, StreamId.CONTROL_RAW_QUOTE.getCode())
         ) {
-            AgentRunner.startOnThread(agentRunner);
-            LOGGER.info("Started {}", agentRunner.agent());
-            barrier.await();
-            LOGGER.info("Shutting down {}", agentRunner.agent());
+            FxPriceGenerator generator = new FxPriceGenerator(new CachedClock(), new QuotePublisher(quotePub, false), SymbolUniverse.load());
+            if (Boolean.parseBoolean(System.getProperty("marketdata.forwards", "false"))) {
+                generator.enableForwards(ForwardCurve.defaultCurve());
+            }
+            try (
+                    AgentRunner agentRunner = new AgentRunner(new BusySpinIdleStrategy(),
+                            Throwable::printStackTrace,
+                            null,
+                            new MultiStreamPoller(
+                                    "pricing-engine-poller",
+                                    new Worker[]{
+                                            new GeneratorControlPoller(controlSub, generator),
+                                            generator
+                                    }
+                            ));
+                    var barrier = new ShutdownSignalBarrier()
+            ) {
+                AgentRunner.startOnThread(agentRunner);
+                LOGGER.info("Started {}", agentRunner.agent());
+                barrier.await();
+                LOGGER.info("Shutting down {}", agentRunner.agent());
+            }
         }
         LOGGER.info("Application Stopped");
     }
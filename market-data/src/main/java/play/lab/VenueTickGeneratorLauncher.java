@@ -0,0 +1,73 @@
+package play.lab;
+
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.marketdata.venue.VenueTickGenerator;
+import play.lab.marketdata.venue.VenueTickSink;
+import play.lab.model.sbe.CurrencyPair;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.lifecycle.MultiStreamPoller;
+import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes simulated EBS/REUTERS/CURRENEX VenueTicks on {@link StreamId#DATA_VENUE_TICK} as load for the
+ * ticker plant. {@code -Dvenuetick.cycleMicros=0} generates on every duty cycle.
+ */
+public class VenueTickGeneratorLauncher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VenueTickGeneratorLauncher.class);
+
+    public static void main(String[] args) {
+        final long cycleIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("venuetick.cycleMicros", 1_000L));
+        final long seed = Long.getLong("venuetick.seed", System.nanoTime());
+        LOGGER.info("Application Starting Up");
+        try (
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                Publication venueTickPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_VENUE_TICK.getCode())
+        ) {
+            final VenueTickGenerator generator = new VenueTickGenerator(
+                    new CachedClock(),
+                    new SystemEpochNanoClock(),
+                    VenueTickSink.publication(venueTickPub),
+                    cycleIntervalNanos,
+                    seed)
+                    .addSymbol(CurrencyPair.EURUSD, 1.1000, 0.018, 0.5)
+                    .addSymbol(CurrencyPair.USDJPY, 145.00, 0.030, 1.0)
+                    .addSymbol(CurrencyPair.GBPUSD, 1.2500, 0.025, 0.6)
+                    .addSymbol(CurrencyPair.USDCHF, 0.8800, 0.017, 0.5)
+                    .addSymbol(CurrencyPair.AUDUSD, 0.6600, 0.028, 0.6)
+                    .addSymbol(CurrencyPair.NZDUSD, 0.6000, 0.030, 0.7)
+                    .addSymbol(CurrencyPair.USDCAD, 1.3600, 0.022, 0.5)
+                    .addSymbol(CurrencyPair.EURJPY, 158.00, 0.025, 1.0)
+                    .addSymbol(CurrencyPair.EURGBP, 0.8800, 0.017, 0.6)
+                    .addSymbol(CurrencyPair.EURCHF, 0.9700, 0.015, 0.5);
+            try (
+                    AgentRunner agentRunner = new AgentRunner(new BusySpinIdleStrategy(),
+                            Throwable::printStackTrace,
+                            null,
+                            new MultiStreamPoller(
+                                    "venue-tick-generator-poller",
+                                    new Worker[]{
+                                            generator
+                                    }
+                            ));
+                    var barrier = new ShutdownSignalBarrier()
+            ) {
+                AgentRunner.startOnThread(agentRunner);
+                LOGGER.info("Started {} seed={} cycleIntervalNanos={}", agentRunner.agent(), seed, cycleIntervalNanos);
+                barrier.await();
+                LOGGER.info("Shutting down {}", agentRunner.agent());
+            }
+        }
+        LOGGER.info("Application Stopped");
+    }
+}
@@ -0,0 +1,54 @@
+package play.lab.marketdata.generator;
+
+import play.lab.model.sbe.Currency;
+import play.lab.model.sbe.CurrencyPair;
+import pub.lab.trading.common.util.CurrencyMapper;
+
+import java.util.Arrays;
+
+/**
+ * Flat simple-interest deposit rate per currency, ACT/360. Forward outright = spot * (1 + r_term * d / 360) /
+ * (1 + r_base * d / 360), so forward points come from the rate differential only. Good enough to give the
+ * forward pricing path realistic numbers, not a curve build.
+ */
+public class ForwardCurve {
+    private static final double DAY_COUNT_BASIS = 360.0;
+    private static final double DEFAULT_RATE = 0.03;
+
+    private final double[] ratesByCcy = new double[256];
+
+    public ForwardCurve() {
+        Arrays.fill(ratesByCcy, DEFAULT_RATE);
+    }
+
+    public static ForwardCurve defaultCurve() {
+        return new ForwardCurve()
+                .rate(Currency.USD, 0.0530)
+                .rate(Currency.EUR, 0.0390)
+                .rate(Currency.JPY, 0.0010)
+                .rate(Currency.GBP, 0.0520)
+                .rate(Currency.AUD, 0.0435)
+                .rate(Currency.CAD, 0.0500)
+                .rate(Currency.CHF, 0.0150)
+                .rate(Currency.NZD, 0.0550);
+    }
+
+    public ForwardCurve rate(Currency ccy, double annualRate) {
+        ratesByCcy[ccy.value()] = annualRate;
+        return this;
+    }
+
+    public double rate(Currency ccy) {
+        return ratesByCcy[ccy.value()];
+    }
+
+    /**
+     * Multiplier taking a spot rate to the outright for {@code days} from spot. Negative days (TODAY, TOM)
+     * give the pre-spot outright.
+     */
+    public double forwardFactor(CurrencyPair pair, long days) {
+        double base = rate(CurrencyMapper.getBase(pair.value()));
+        double term = rate(CurrencyMapper.getTerm(pair.value()));
+        return (1 + term * days / DAY_COUNT_BASIS) / (1 + base * days / DAY_COUNT_BASIS);
+    }
+}
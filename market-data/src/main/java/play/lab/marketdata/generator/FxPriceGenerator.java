@@ -1,5 +1,7 @@
 package play.lab.marketdata.generator;
 
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.SystemEpochNanoClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.lab.TickThrottle;
@@ -7,168 +9,340 @@ import play.lab.marketdata.model.MarketDataTick;
 import play.lab.marketdata.model.RawPriceConfig;
 import play.lab.model.sbe.Currency;
 import play.lab.model.sbe.CurrencyPair;
+import pub.lab.trading.common.model.Tenor;
 import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.util.CachedClock;
+import pub.lab.trading.common.util.ControlledCachedClock;
 import pub.lab.trading.common.util.CurrencyMapper;
 import pub.lab.trading.common.util.HolidayCalendar;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
 
 public class FxPriceGenerator implements Worker {
     private static final Logger LOGGER = LoggerFactory.getLogger(FxPriceGenerator.class);
 
     private static final double DEFAULT_SPREAD_BP = 0.5;
     private static final double DEFAULT_VOLATILITY = 0.5;
+    private static final long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1);
+    private static final Tenor[] TENORS = Tenor.values();
+    // forward bid/ask widen by this many bp of mid per year to spot
+    private static final double FORWARD_SPREAD_BP_PER_YEAR = 2.0;
+    // CurrencyPair and Currency are uint8 SBE enums, value() indexes these tables directly
+    private static final int UINT8_VALUES = 256;
     private final CachedClock cachedClock;
-    private final Map<CurrencyPair, PairModel> pairs = new HashMap<>();
-    private final Map<Currency, RawPriceConfig> configOverridesByCcy = new ConcurrentHashMap<>();
+    // stamps priceCreationTimestamp, pacing stays on cachedClock
+    private final EpochNanoClock epochClock;
+    // only touched on the agent thread: runtime changes arrive through GeneratorControlPoller
+    private final PairModel[] modelsByPair = new PairModel[UINT8_VALUES];
+    private final RawPriceConfig[] configOverridesByCcy = new RawPriceConfig[UINT8_VALUES];
+    // active pair values, kept ascending so the publish order is the CurrencyPair order run to run
+    private final int[] activePairs = new int[UINT8_VALUES];
+    private int activePairCount;
+    private final MarketDataTick tick = new MarketDataTick(CurrencyPair.NULL_VAL, 0, 0, 0, 0, 0);
     private final RawPriceConfig defaultConfig = new RawPriceConfig(Currency.NULL_VAL, DEFAULT_VOLATILITY, DEFAULT_SPREAD_BP);
-    private final QuotePublisher aeronPub = new QuotePublisher();
+    private final QuotePublisher aeronPub;
     private final TickThrottle throttle = new TickThrottle(30); // 100ms
+    private final ControlledCachedClock controlledClock;
+    private final long seed;
+    private long nextCycleNanos;
+    // value date ladder for the current trade date, recomputed when the date rolls
+    private final long[] valueDatesByTenor = new long[TENORS.length];
+    private final double[] forwardSpreadByTenor = new double[TENORS.length];
+    private long ladderTradeDate = Long.MIN_VALUE;
+    private ForwardCurve forwardCurve;
+
+    public FxPriceGenerator(final CachedClock cachedClock,
+                            final QuotePublisher aeronPub,
+                            final Map<CurrencyPair, Double> universe) {
+        this(cachedClock, new SystemEpochNanoClock(), aeronPub, universe, null, 0L);
+    }
 
-    public FxPriceGenerator(final CachedClock cachedClock) {
+    private FxPriceGenerator(final CachedClock cachedClock,
+                             final EpochNanoClock epochClock,
+                             final QuotePublisher aeronPub,
+                             final Map<CurrencyPair, Double> universe,
+                             final ControlledCachedClock controlledClock,
+                             final long seed) {
         this.cachedClock = cachedClock;
+        this.epochClock = epochClock;
+        this.aeronPub = aeronPub;
+        this.controlledClock = controlledClock;
+        this.seed = seed;
         // Volatility overrides (annualized)
-        configOverridesByCcy.put(Currency.USD, new RawPriceConfig(Currency.USD, 0.020, 0.5)); // US Dollar
-        configOverridesByCcy.put(Currency.EUR, new RawPriceConfig(Currency.EUR, 0.018, 0.5)); // Euro
-        configOverridesByCcy.put(Currency.JPY, new RawPriceConfig(Currency.JPY, 0.030, 1.0)); // Japanese Yen
-        configOverridesByCcy.put(Currency.GBP, new RawPriceConfig(Currency.GBP, 0.025, 0.6)); // British Pound
-        configOverridesByCcy.put(Currency.CHF, new RawPriceConfig(Currency.CHF, 0.017, 0.4)); // Swiss Franc
-        configOverridesByCcy.put(Currency.AUD, new RawPriceConfig(Currency.AUD, 0.028, 0.6)); // Australian Dollar
-        configOverridesByCcy.put(Currency.NZD, new RawPriceConfig(Currency.NZD, 0.030, 0.7)); // New Zealand Dollar
-        configOverridesByCcy.put(Currency.CAD, new RawPriceConfig(Currency.CAD, 0.022, 0.5)); // Canadian Dollar
-
-        // Default major pairs and crosses
-        add(CurrencyPair.EURUSD, 1.1000);
-        add(CurrencyPair.USDJPY, 145.00);
-        add(CurrencyPair.GBPUSD, 1.2500);
-        add(CurrencyPair.USDCHF, 0.8800);
-        add(CurrencyPair.AUDUSD, 0.6600);
-        add(CurrencyPair.NZDUSD, 0.6000);
-        add(CurrencyPair.USDCAD, 1.3600);
-
-        // Crosses (most traded)
-        add(CurrencyPair.EURJPY, 158.00);
-        add(CurrencyPair.EURGBP, 0.8800);
-        add(CurrencyPair.EURCHF, 0.9700);
-        add(CurrencyPair.GBPJPY, 184.50);
-        add(CurrencyPair.AUDJPY, 98.50);
-        add(CurrencyPair.NZDJPY, 90.20);
-        add(CurrencyPair.CADJPY, 107.30);
-        add(CurrencyPair.AUDNZD, 1.0700);
-        add(CurrencyPair.EURCAD, 1.4700);
-        add(CurrencyPair.GBPCHF, 1.1100);
+        override(new RawPriceConfig(Currency.USD, 0.020, 0.5)); // US Dollar
+        override(new RawPriceConfig(Currency.EUR, 0.018, 0.5)); // Euro
+        override(new RawPriceConfig(Currency.JPY, 0.030, 1.0)); // Japanese Yen
+        override(new RawPriceConfig(Currency.GBP, 0.025, 0.6)); // British Pound
+        override(new RawPriceConfig(Currency.CHF, 0.017, 0.4)); // Swiss Franc
+        override(new RawPriceConfig(Currency.AUD, 0.028, 0.6)); // Australian Dollar
+        override(new RawPriceConfig(Currency.NZD, 0.030, 0.7)); // New Zealand Dollar
+        override(new RawPriceConfig(Currency.CAD, 0.022, 0.5)); // Canadian Dollar
+
+        universe.forEach(this::add);
+    }
+
+    /**
+     * Deterministic mode: every pair draws from its own {@link SplittableRandom} derived from {@code seed}, and
+     * time only moves when {@link #doWork()} advances {@code clock} by one tick interval. There is no pacing, so
+     * a full day of ticks is produced as fast as the publisher drains, and two runs with the same seed and start
+     * time publish identical bytes.
+     */
+    public static FxPriceGenerator deterministic(final ControlledCachedClock clock,
+                                                 final QuotePublisher aeronPub,
+                                                 final Map<CurrencyPair, Double> universe,
+                                                 final long seed) {
+        return new FxPriceGenerator(clock, clock::nanoTime, aeronPub, universe, clock, seed);
+    }
 
+    /**
+     * Publishes an outright ladder, TOM through ONE_YEAR, after every spot tick, on the spot quote stream with each
+     * quote's tenor set. Forward factors and value dates are fixed for the trade date, so each forward quote costs a
+     * multiply.
+     */
+    public void enableForwards(ForwardCurve curve) {
+        this.forwardCurve = curve;
+        ladderTradeDate = Long.MIN_VALUE;
+    }
+
+    public void setDepositRate(Currency ccy, double annualRate) {
+        if (forwardCurve == null) {
+            LOGGER.warn("Deposit rate for {} ignored, forwards are not enabled", ccy);
+            return;
+        }
+        forwardCurve.rate(ccy, annualRate);
+        ladderTradeDate = Long.MIN_VALUE;
     }
 
     private void add(CurrencyPair pair, double initialPrice) {
         double volatility = inferVolatility(pair);
         double spread = inferSpread(pair);
-        pairs.put(pair, new PairModel(pair, initialPrice, volatility, spread));
+        putModel(new PairModel(pair, initialPrice, volatility, spread, newRandom(pair)));
     }
 
     public void addSymbol(CurrencyPair symbol, double initialPrice, double volatility, double spread) {
-        configOverridesByCcy.put(CurrencyMapper.getBase(symbol.value()), new RawPriceConfig(CurrencyMapper.getBase(symbol.value()), volatility, spread));
-        configOverridesByCcy.put(CurrencyMapper.getTerm(symbol.value()), new RawPriceConfig(CurrencyMapper.getBase(symbol.value()), volatility, spread));
-        pairs.put(symbol, new PairModel(symbol, initialPrice, volatility, spread));
+        override(new RawPriceConfig(CurrencyMapper.getBase(symbol.value()), volatility, spread));
+        override(new RawPriceConfig(CurrencyMapper.getTerm(symbol.value()), volatility, spread));
+        putModel(new PairModel(symbol, initialPrice, volatility, spread, newRandom(symbol)));
+    }
+
+    public void removeSymbol(CurrencyPair symbol) {
+        int pairValue = symbol.value();
+        if (modelsByPair[pairValue] == null) {
+            LOGGER.warn("Remove requested for unknown symbol: {}", symbol);
+            return;
+        }
+        modelsByPair[pairValue] = null;
+        int i = 0;
+        while (activePairs[i] != pairValue) {
+            i++;
+        }
+        System.arraycopy(activePairs, i + 1, activePairs, i, activePairCount - i - 1);
+        activePairCount--;
+    }
+
+    private void putModel(PairModel model) {
+        int pairValue = model.symbol.value();
+        boolean alreadyActive = modelsByPair[pairValue] != null;
+        modelsByPair[pairValue] = model;
+        updateForwardFactors(model);
+        if (alreadyActive) {
+            return;
+        }
+        int i = activePairCount;
+        while (i > 0 && activePairs[i - 1] > pairValue) {
+            activePairs[i] = activePairs[i - 1];
+            i--;
+        }
+        activePairs[i] = pairValue;
+        activePairCount++;
+    }
+
+    private void override(RawPriceConfig config) {
+        configOverridesByCcy[config.getCcy().value()] = config;
+    }
+
+    private RawPriceConfig configFor(Currency ccy) {
+        RawPriceConfig config = configOverridesByCcy[ccy.value()];
+        return config != null ? config : defaultConfig;
+    }
+
+    public void setTicksPerSecond(int ticksPerSecond) {
+        throttle.setTicksPerSecond(ticksPerSecond);
+    }
+
+    public int getTicksPerSecond() {
+        return throttle.getTicksPerSecond();
+    }
+
+    private SplittableRandom newRandom(CurrencyPair pair) {
+        if (!isDeterministic()) {
+            return new SplittableRandom();
+        }
+        // Keyed by pair rather than by insertion order, so adding a symbol does not shift the other streams.
+        // SplittableRandom mixes its seed, neighbouring per-pair seeds still give independent sequences.
+        return new SplittableRandom(seed + pair.value());
+    }
+
+    public boolean isDeterministic() {
+        return controlledClock != null;
     }
 
     private double inferVolatility(CurrencyPair pair) {
-        Currency base = CurrencyMapper.getBase(pair.value());
-        Currency quote = CurrencyMapper.getTerm(pair.value());
-        return (configOverridesByCcy.getOrDefault(base, defaultConfig).getVolatility()
-                + configOverridesByCcy.getOrDefault(quote, defaultConfig).getVolatility()) / 2;
+        return getVol(pair);
     }
 
     private double inferSpread(CurrencyPair pair) {
-        Currency base = CurrencyMapper.getBase(pair.value());
-        Currency quote = CurrencyMapper.getTerm(pair.value());
-        return Math.max(
-                configOverridesByCcy.getOrDefault(base, defaultConfig).getSpread(),
-                configOverridesByCcy.getOrDefault(quote, defaultConfig).getSpread()
-        );
+        return getSpread(pair);
     }
 
     public double getVol(CurrencyPair pair) {
         Currency base = CurrencyMapper.getBase(pair.value());
         Currency quote = CurrencyMapper.getTerm(pair.value());
-        return (configOverridesByCcy.getOrDefault(base, defaultConfig).getVolatility()
-                + configOverridesByCcy.getOrDefault(quote, defaultConfig).getVolatility()) * 0.5;
+        return (configFor(base).getVolatility() + configFor(quote).getVolatility()) * 0.5;
     }
 
     public double getSpread(CurrencyPair pair) {
         Currency base = CurrencyMapper.getBase(pair.value());
         Currency quote = CurrencyMapper.getTerm(pair.value());
-        return Math.max(
-                configOverridesByCcy.getOrDefault(base, defaultConfig).getSpread(),
-                configOverridesByCcy.getOrDefault(quote, defaultConfig).getSpread()
-        );
+        return Math.max(configFor(base).getSpread(), configFor(quote).getSpread());
     }
 
     public void updateModel(CurrencyPair pair, double vol, double spread) {
-        Currency base = CurrencyMapper.getBase(pair.value());
-        configOverridesByCcy.compute(base, (k, oldValue) -> {
-            if (oldValue == null) {
-                return new RawPriceConfig(base, vol, spread);
-            } else {
-                oldValue.setSpread(spread);
-                oldValue.setVolatility(vol);
-                return oldValue;
-            }
-        });
-
-        Currency term = CurrencyMapper.getTerm(pair.value());
-        configOverridesByCcy.compute(term, (k, oldValue) -> {
-            if (oldValue == null) {
-                return new RawPriceConfig(term, vol, spread);
-            } else {
-                oldValue.setSpread(spread);
-                oldValue.setVolatility(vol);
-                return oldValue;
-            }
-        });
+        overrideConfig(CurrencyMapper.getBase(pair.value()), vol, spread);
+        overrideConfig(CurrencyMapper.getTerm(pair.value()), vol, spread);
+
+        PairModel model = modelsByPair[pair.value()];
+        if (model != null) {
+            model.setVolatility(vol);
+            model.setSpread(spread);
+        }
+    }
 
-        if (pairs.containsKey(pair)) {
-            pairs.get(pair).setVolatility(vol);
-            pairs.get(pair).setSpread(spread);
+    private void overrideConfig(Currency ccy, double vol, double spread) {
+        RawPriceConfig config = configOverridesByCcy[ccy.value()];
+        if (config == null) {
+            override(new RawPriceConfig(ccy, vol, spread));
+        } else {
+            config.setVolatility(vol);
+            config.setSpread(spread);
         }
     }
 
     public Set<CurrencyPair> symbols() {
-        return pairs.keySet();
+        Set<CurrencyPair> symbols = EnumSet.noneOf(CurrencyPair.class);
+        for (int i = 0; i < activePairCount; i++) {
+            symbols.add(modelsByPair[activePairs[i]].getSymbol());
+        }
+        return symbols;
     }
 
+    /**
+     * @param now epoch nanos, stamped on every quote as its priceCreationTimestamp
+     */
     public void generateAll(long now, double dtSeconds) {
-        for (Map.Entry<CurrencyPair, PairModel> entry : pairs.entrySet()) {
-            PairModel model = entry.getValue();
-            MarketDataTick tick = model.nextTick(now, dtSeconds);
+        rollValueDates(now);
+        long valueDate = valueDatesByTenor[Tenor.SPOT.ordinal()];
+        for (int i = 0; i < activePairCount; i++) {
+            PairModel model = modelsByPair[activePairs[i]];
+            // one reused tick, QuotePublisher has encoded it by the time publish returns
+            model.nextTick(tick, now, dtSeconds, valueDate);
             aeronPub.publish(tick);
             LOGGER.debug("Generated tick: {}", tick);
+            if (forwardCurve != null) {
+                publishForwards(model, tick.getMid(), tick.getBid(), tick.getAsk());
+            }
+        }
+    }
+
+    private void publishForwards(PairModel model, double spotMid, double spotBid, double spotAsk) {
+        for (Tenor tenor : TENORS) {
+            if (tenor == Tenor.SPOT || tenor == Tenor.TODAY) {
+                continue;
+            }
+            int t = tenor.ordinal();
+            double factor = model.forwardFactors[t];
+            double widen = spotMid * forwardSpreadByTenor[t];
+            tick.setTenor(tenor);
+            tick.setValueDateEpoch(valueDatesByTenor[t]);
+            tick.setMid(spotMid * factor);
+            tick.setBid(spotBid * factor - widen);
+            tick.setAsk(spotAsk * factor + widen);
+            aeronPub.publish(tick);
+        }
+    }
+
+    private void rollValueDates(long now) {
+        long tradeDate = tradeDate(now);
+        if (tradeDate == ladderTradeDate) {
+            return;
+        }
+        ladderTradeDate = tradeDate;
+        long spot = HolidayCalendar.getValueDate(tradeDate);
+        for (Tenor tenor : TENORS) {
+            long valueDate = HolidayCalendar.getValueDate(tenor, tradeDate);
+            valueDatesByTenor[tenor.ordinal()] = valueDate;
+            forwardSpreadByTenor[tenor.ordinal()] = Math.abs(valueDate - spot) / 365.0 * FORWARD_SPREAD_BP_PER_YEAR / 10000;
+        }
+        for (int i = 0; i < activePairCount; i++) {
+            updateForwardFactors(modelsByPair[activePairs[i]]);
+        }
+    }
+
+    private void updateForwardFactors(PairModel model) {
+        if (forwardCurve == null || ladderTradeDate == Long.MIN_VALUE) {
+            return;
+        }
+        long spot = valueDatesByTenor[Tenor.SPOT.ordinal()];
+        for (Tenor tenor : TENORS) {
+            model.forwardFactors[tenor.ordinal()] =
+                    forwardCurve.forwardFactor(model.symbol, valueDatesByTenor[tenor.ordinal()] - spot);
         }
     }
 
     public List<RawPriceConfig> generateAllConfig() {
-        return new ArrayList<>(configOverridesByCcy.values());
+        List<RawPriceConfig> configs = new ArrayList<>();
+        for (RawPriceConfig config : configOverridesByCcy) {
+            if (config != null) {
+                configs.add(config);
+            }
+        }
+        return configs;
     }
 
     public MarketDataTick generate(CurrencyPair symbol, long now, double dtSeconds) {
-        PairModel model = pairs.get(symbol);
+        PairModel model = modelsByPair[symbol.value()];
         if (model == null) {
             LOGGER.warn("Unknown symbol requested: {}", symbol);
             throw new IllegalArgumentException("Unknown symbol: " + symbol);
         }
-        return model.nextTick(now, dtSeconds);
+        rollValueDates(now);
+        return model.nextTick(new MarketDataTick(symbol, 0, 0, 0, 0, 0), now, dtSeconds,
+                valueDatesByTenor[Tenor.SPOT.ordinal()]);
+    }
+
+    private static long tradeDate(long epochNanos) {
+        return epochNanos / NANOS_PER_DAY;
     }
 
     @Override
     public int doWork() {
-        generateAll(cachedClock.nanoTime(), throttle.getDtSeconds());
+        long now = cachedClock.nanoTime();
+        if (now < nextCycleNanos) {
+            return 0;
+        }
+        double dtSeconds = throttle.getDtSeconds();
+        long cycleNanos = (long) (dtSeconds * 1_000_000_000L);
+        nextCycleNanos = now + cycleNanos;
+        generateAll(epochClock.nanoTime(), dtSeconds);
+        if (isDeterministic()) {
+            controlledClock.advance(cycleNanos);
+        }
         return 1;
     }
 
@@ -179,13 +353,16 @@ public class FxPriceGenerator implements Worker {
 
     private static class PairModel {
         final CurrencyPair symbol;
+        final SplittableRandom random;
+        final double[] forwardFactors = new double[TENORS.length];
         double price, volatility, spread;
 
-        PairModel(CurrencyPair symbol, double price, double vol, double spr) {
+        PairModel(CurrencyPair symbol, double price, double vol, double spr, SplittableRandom random) {
             this.symbol = symbol;
             this.price = price;
             this.volatility = vol;
             this.spread = spr;
+            this.random = random;
         }
 
         public CurrencyPair getSymbol() {
@@ -216,17 +393,18 @@ public class FxPriceGenerator implements Worker {
             this.spread = spread;
         }
 
-        MarketDataTick nextTick(long now, double dt) {
-            double z = ThreadLocalRandom.current().nextGaussian();
+        MarketDataTick nextTick(MarketDataTick tick, long now, double dt, long valueDate) {
+            double z = random.nextGaussian();
             price *= Math.exp(-0.5 * volatility * volatility * dt + volatility * Math.sqrt(dt) * z);
             double spread = price * this.spread / 10000;
-            return new MarketDataTick(symbol,
-                    price,
-                    Math.abs(price - spread) * 0.5,
-                    Math.abs(price + spread) * 0.5,
-                    HolidayCalendar.getValueDate(),
-                    now
-            );
+            tick.setPair(symbol);
+            tick.setTenor(Tenor.SPOT);
+            tick.setMid(price);
+            tick.setBid(Math.abs(price - spread) * 0.5);
+            tick.setAsk(Math.abs(price + spread) * 0.5);
+            tick.setValueDateEpoch(valueDate);
+            tick.setTimestamp(now);
+            return tick;
         }
     }
 }
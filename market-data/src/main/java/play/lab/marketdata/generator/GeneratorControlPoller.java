@@ -0,0 +1,92 @@
+package play.lab.marketdata.generator;
+
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.DirectBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.MessageHeaderDecoder;
+import play.lab.model.sbe.RawQuoteGeneratorControlDecoder;
+import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CurrencyMapper;
+
+/**
+ * Applies {@code RawQuoteGeneratorControl} messages from CONTROL_RAW_QUOTE to a {@link FxPriceGenerator}.
+ * <p>
+ * Must share the generator's agent (same {@code MultiStreamPoller}) so changes land between duty cycles
+ * without any locking on the generator's tables. A message naming a pair with no mapped currencies, or carrying a
+ * non-positive price, volatility or tick rate, is logged and dropped.
+ */
+public class GeneratorControlPoller implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneratorControlPoller.class);
+
+    private final Subscription controlSubscription;
+    private final FxPriceGenerator generator;
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final RawQuoteGeneratorControlDecoder controlDecoder = new RawQuoteGeneratorControlDecoder();
+    private final FragmentHandler fragmentHandler = (buf, offset, len, hdr) -> onControl(buf, offset);
+
+    public GeneratorControlPoller(final Subscription controlSubscription, final FxPriceGenerator generator) {
+        this.controlSubscription = controlSubscription;
+        this.generator = generator;
+    }
+
+    @Override
+    public int doWork() {
+        return controlSubscription.poll(fragmentHandler, 10);
+    }
+
+    private void onControl(DirectBuffer buf, int offset) {
+        headerDecoder.wrap(buf, offset);
+        if (headerDecoder.templateId() != RawQuoteGeneratorControlDecoder.TEMPLATE_ID) {
+            return;
+        }
+        controlDecoder.wrapAndApplyHeader(buf, offset, headerDecoder);
+        LOGGER.info("Received RawQuoteGeneratorControl :: {}", controlDecoder);
+        if (!isValid()) {
+            LOGGER.warn("Rejected RawQuoteGeneratorControl :: {}", controlDecoder);
+            return;
+        }
+
+        switch (controlDecoder.action()) {
+            case ADD_SYMBOL -> generator.addSymbol(
+                    controlDecoder.symbol(),
+                    controlDecoder.initialPrice(),
+                    controlDecoder.volatility(),
+                    controlDecoder.spreadBps());
+            case REMOVE_SYMBOL -> generator.removeSymbol(controlDecoder.symbol());
+            case UPDATE_MODEL -> generator.updateModel(
+                    controlDecoder.symbol(),
+                    controlDecoder.volatility(),
+                    controlDecoder.spreadBps());
+            case SET_TICK_RATE -> generator.setTicksPerSecond((int) controlDecoder.ticksPerSecond());
+            default -> LOGGER.warn("Unsupported generator action {}", controlDecoder.action());
+        }
+    }
+
+    // NaN fails every comparison, so the checks are written to reject it too
+    private boolean isValid() {
+        return switch (controlDecoder.action()) {
+            case ADD_SYMBOL -> isKnownSymbol()
+                    && controlDecoder.initialPrice() > 0
+                    && controlDecoder.volatility() > 0
+                    && controlDecoder.spreadBps() >= 0;
+            case REMOVE_SYMBOL -> isKnownSymbol();
+            case UPDATE_MODEL -> isKnownSymbol()
+                    && controlDecoder.volatility() > 0
+                    && controlDecoder.spreadBps() >= 0;
+            case SET_TICK_RATE -> controlDecoder.ticksPerSecond() > 0 && controlDecoder.ticksPerSecond() <= Integer.MAX_VALUE;
+            default -> true;
+        };
+    }
+
+    // NULL_VAL and any pair without base and term currencies would land on the wrong config slots
+    private boolean isKnownSymbol() {
+        return CurrencyMapper.isMapped(controlDecoder.symbolRaw());
+    }
+
+    @Override
+    public String roleName() {
+        return "GeneratorControlPoller";
+    }
+}
@@ -1,30 +1,45 @@
 package play.lab.marketdata.generator;
 
-import io.aeron.Aeron;
 import io.aeron.Publication;
+import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.YieldingIdleStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.lab.marketdata.model.MarketDataTick;
-import pub.lab.trading.common.config.AeronConfigs;
-import pub.lab.trading.common.config.StreamId;
 import pub.lab.trading.common.model.ClientTierLevel;
-import pub.lab.trading.common.model.Tenor;
 import pub.lab.trading.common.model.pricing.QuoteMessageWriter;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
 
 public class QuotePublisher {
     private static final Logger LOGGER = LoggerFactory.getLogger(QuotePublisher.class);
 
     private final QuoteMessageWriter quoteMessageWriter;
     private final Publication quotePub;
+    private final boolean retryOnBackPressure;
+    private final boolean digestQuotes;
+    private final IdleStrategy backPressureIdleStrategy = new YieldingIdleStrategy();
+    private final CRC32C digest = new CRC32C();
+    private long publishedCount;
 
-    QuotePublisher() {
-        Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
-        this.quotePub = aeron.addPublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_RAW_QUOTE.getCode());
+    public QuotePublisher(final Publication quotePub, final boolean retryOnBackPressure) {
+        this(quotePub, retryOnBackPressure, false);
+    }
+
+    /**
+     * @param retryOnBackPressure retry a back-pressured quote instead of dropping it, so the published
+     *                            stream is complete and can be compared run to run
+     * @param digestQuotes        keep a {@link #digest()} of the published stream, for deterministic runs only
+     */
+    public QuotePublisher(final Publication quotePub, final boolean retryOnBackPressure, final boolean digestQuotes) {
+        this.quotePub = quotePub;
+        this.retryOnBackPressure = retryOnBackPressure;
+        this.digestQuotes = digestQuotes;
         this.quoteMessageWriter = new QuoteMessageWriter();
-        LOGGER.info("Connected Aeron Dir : {} {} {}", aeron.context().aeronDirectory(), quotePub.channel(), quotePub.streamId());
+        LOGGER.info("Connected Aeron {} {}", quotePub.channel(), quotePub.streamId());
 
         // Wait for the subscriber to connect
         while (!quotePub.isConnected()) {
@@ -42,12 +57,12 @@ public class QuotePublisher {
             quoteMessageWriter.beginQuote(
                     marketDataTick.getPair(),
                     marketDataTick.getValueDateEpoch(),
-                    marketDataTick.getValueDateEpoch(),
-                    Tenor.SPOT.getCode(),
+                    marketDataTick.getTimestamp(),
+                    marketDataTick.getTenor().getCode(),
                     ClientTierLevel.GOLD.getId(),
                     5);
             int encodedLength = quoteMessageWriter.encodedLength();
-            LOGGER.info("Preparing to publish quote for {}: bid={}, ask={}, encodedLength={}",
+            LOGGER.debug("Preparing to publish quote for {}: bid={}, ask={}, encodedLength={}",
                     marketDataTick.getPair(),
                     marketDataTick.getBid(),
                     marketDataTick.getAsk(),
@@ -86,16 +101,15 @@ public class QuotePublisher {
                     marketDataTick.getAsk(),
                     encodedLength
             );
-            long result = quotePub.offer(buffer, 0, encodedLength);
+            long result = offer(buffer, encodedLength);
             if (result < 0) {
                 LOGGER.error("❌ Failed to publish quote for {} — code {}, channel: {}, streamId: {}, status: {}",
                         marketDataTick.getPair(), result, quotePub.channel(), quotePub.streamId(), quotePub.channelStatus());
             } else {
                 LOGGER.debug("✅ Published quote for {}", marketDataTick.getPair());
-                try {
-                    TimeUnit.MILLISECONDS.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                publishedCount++;
+                if (digestQuotes) {
+                    updateDigest(buffer, encodedLength);
                 }
             }
         } catch (Exception e) {
@@ -104,7 +118,38 @@ public class QuotePublisher {
         }
     }
 
+    private long offer(final UnsafeBuffer buffer, final int encodedLength) {
+        long result = quotePub.offer(buffer, 0, encodedLength);
+        if (retryOnBackPressure) {
+            backPressureIdleStrategy.reset();
+            while (result == Publication.BACK_PRESSURED || result == Publication.ADMIN_ACTION) {
+                backPressureIdleStrategy.idle();
+                result = quotePub.offer(buffer, 0, encodedLength);
+            }
+        }
+        return result;
+    }
+
+    private void updateDigest(final UnsafeBuffer buffer, final int encodedLength) {
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        byteBuffer.limit(encodedLength).position(0);
+        digest.update(byteBuffer);
+        byteBuffer.clear();
+    }
+
     boolean isReady() {
         return quotePub.isConnected();
     }
+
+    public long publishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * CRC32C over every accepted quote, in publish order. Two runs produced the same byte stream
+     * when their digests and counts match. Always 0 unless the publisher was built with {@code digestQuotes}.
+     */
+    public long digest() {
+        return digest.getValue();
+    }
 }
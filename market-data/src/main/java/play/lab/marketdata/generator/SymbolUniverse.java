@@ -0,0 +1,49 @@
+package play.lab.marketdata.generator;
+
+import play.lab.model.sbe.CurrencyPair;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Initial pairs and mids for {@link FxPriceGenerator}, read from {@code -Dmarketdata.universe=<file>} or the
+ * bundled {@code fx-universe.properties}.
+ */
+public class SymbolUniverse {
+    private static final String UNIVERSE_PROPERTY = "marketdata.universe";
+    private static final String DEFAULT_RESOURCE = "/fx-universe.properties";
+
+    private SymbolUniverse() {
+        // utility class
+    }
+
+    public static Map<CurrencyPair, Double> load() {
+        final String location = System.getProperty(UNIVERSE_PROPERTY);
+        try (InputStream in = location != null
+                ? Files.newInputStream(Path.of(location))
+                : SymbolUniverse.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Symbol universe resource not found: " + DEFAULT_RESOURCE);
+            }
+            final Properties properties = new Properties();
+            properties.load(in);
+            return parse(properties);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load symbol universe from " + (location != null ? location : DEFAULT_RESOURCE), e);
+        }
+    }
+
+    static Map<CurrencyPair, Double> parse(final Properties properties) {
+        final Map<CurrencyPair, Double> universe = new EnumMap<>(CurrencyPair.class);
+        for (String pair : properties.stringPropertyNames()) {
+            universe.put(CurrencyPair.valueOf(pair.trim()), Double.parseDouble(properties.getProperty(pair).trim()));
+        }
+        return universe;
+    }
+}
@@ -1,11 +1,13 @@
 package play.lab.marketdata.model;
 
 import play.lab.model.sbe.CurrencyPair;
+import pub.lab.trading.common.model.Tenor;
 
 public class MarketDataTick {
     private CurrencyPair pair;
     private double mid, bid, ask;
     private long valueDateEpoch, timestamp;
+    private Tenor tenor = Tenor.SPOT;
 
     public MarketDataTick(CurrencyPair pair, double mid, double bid, double ask, long valueDateEpoch, long timestamp) {
         this.pair = pair;
@@ -63,4 +65,12 @@ public class MarketDataTick {
     public void setValueDateEpoch(long valueDateEpoch) {
         this.valueDateEpoch = valueDateEpoch;
     }
+
+    public Tenor getTenor() {
+        return tenor;
+    }
+
+    public void setTenor(Tenor tenor) {
+        this.tenor = tenor;
+    }
 }
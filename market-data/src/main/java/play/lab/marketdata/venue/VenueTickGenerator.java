@@ -0,0 +1,179 @@
+package play.lab.marketdata.venue;
+
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.VenueID;
+import play.lab.model.sbe.VenueTickEncoder;
+import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
+import pub.lab.trading.common.util.PriceScale;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Simulates EBS, REUTERS and CURRENEX quoting the same pairs around a shared mid.
+ * <p>
+ * Each venue has its own latency offset (venueTime lags ingressTime), spread, update probability and sequence
+ * number, and now and then skips sequence numbers to exercise gap handling downstream. Ticks are encoded as
+ * VenueTick with {@code securityId = CurrencyPair.value()} and prices scaled by {@link PriceScale}.
+ */
+public class VenueTickGenerator implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VenueTickGenerator.class);
+
+    private static final int MAX_PAIRS = 64;
+    private static final int MAX_GAP = 5;
+    private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+
+    //                                               EBS       REUTERS   CURRENEX
+    private static final VenueID[] VENUES = {VenueID.EBS, VenueID.REUTERS, VenueID.CURRENEX};
+    private static final long[] LATENCY_NANOS = {150_000, 400_000, 900_000};
+    private static final long[] JITTER_NANOS = {20_000, 80_000, 250_000};
+    private static final double[] SPREAD_FACTOR = {1.0, 1.3, 1.8};
+    private static final double[] UPDATE_PROBABILITY = {0.9, 0.6, 0.35};
+    private static final double[] GAP_PROBABILITY = {0.0001, 0.0005, 0.002};
+
+    private final CachedClock clock;
+    private final EpochNanoClock epochClock;
+    private final VenueTickSink sink;
+    private final long cycleIntervalNanos;
+    private final SplittableRandom random;
+
+    private final VenueTickEncoder encoder = new VenueTickEncoder();
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(128));
+
+    private final CurrencyPair[] pairs = new CurrencyPair[MAX_PAIRS];
+    private final double[] mids = new double[MAX_PAIRS];
+    private final double[] volatilities = new double[MAX_PAIRS];
+    private final double[] spreadsBps = new double[MAX_PAIRS];
+    private final long[] venueSeqNums = new long[VENUES.length];
+    private int pairCount;
+
+    private long lastCycleNanos;
+    private long publishedTicks;
+    private long droppedTicks;
+    private long skippedSeqNums;
+
+    public VenueTickGenerator(final CachedClock clock, final VenueTickSink sink, final long cycleIntervalNanos, final long seed) {
+        this(clock, new SystemEpochNanoClock(), sink, cycleIntervalNanos, seed);
+    }
+
+    /**
+     * @param clock              paces the generation cycles
+     * @param epochClock         venueTime and ingressTime, epoch nanos as a feed handler stamps them
+     * @param cycleIntervalNanos minimum time between generation cycles, 0 to generate on every duty cycle
+     * @param seed               seed for prices, latencies and gaps, so a load profile can be repeated
+     */
+    public VenueTickGenerator(final CachedClock clock,
+                              final EpochNanoClock epochClock,
+                              final VenueTickSink sink,
+                              final long cycleIntervalNanos,
+                              final long seed) {
+        this.clock = clock;
+        this.epochClock = epochClock;
+        this.sink = sink;
+        this.cycleIntervalNanos = cycleIntervalNanos;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public VenueTickGenerator addSymbol(CurrencyPair symbol, double initialPrice, double volatility, double spreadBps) {
+        if (pairCount == MAX_PAIRS) {
+            throw new IllegalStateException("Venue tick generator supports at most " + MAX_PAIRS + " pairs");
+        }
+        pairs[pairCount] = symbol;
+        mids[pairCount] = initialPrice;
+        volatilities[pairCount] = volatility;
+        spreadsBps[pairCount] = spreadBps;
+        pairCount++;
+        return this;
+    }
+
+    @Override
+    public int doWork() {
+        final long now = clock.nanoTime();
+        if (lastCycleNanos != 0 && now - lastCycleNanos < cycleIntervalNanos) {
+            return 0;
+        }
+        final double dtYears = lastCycleNanos == 0 ? 0 : (now - lastCycleNanos) / 1e9 / SECONDS_PER_YEAR;
+        lastCycleNanos = now;
+
+        final long epochNow = epochClock.nanoTime();
+        int work = 0;
+        for (int p = 0; p < pairCount; p++) {
+            final double vol = volatilities[p];
+            mids[p] *= Math.exp(-0.5 * vol * vol * dtYears + vol * Math.sqrt(dtYears) * random.nextGaussian());
+            for (int v = 0; v < VENUES.length; v++) {
+                if (random.nextDouble() < UPDATE_PROBABILITY[v]) {
+                    work += publish(p, v, epochNow);
+                }
+            }
+        }
+        return work;
+    }
+
+    private int publish(int p, int v, long epochNow) {
+        if (random.nextDouble() < GAP_PROBABILITY[v]) {
+            final int gap = 1 + random.nextInt(MAX_GAP);
+            venueSeqNums[v] += gap;
+            skippedSeqNums += gap;
+        }
+        final long seqNum = ++venueSeqNums[v];
+
+        final double mid = mids[p];
+        final double halfSpread = mid * spreadsBps[p] * SPREAD_FACTOR[v] / 20_000;
+        final double skew = halfSpread * (random.nextDouble() - 0.5);
+
+        encoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                .venueId(VENUES[v])
+                .securityId(pairs[p].value())
+                .venueSeqNum(seqNum)
+                .venueTime(epochNow - LATENCY_NANOS[v] - (long) (random.nextDouble() * JITTER_NANOS[v]))
+                .ingressTime(epochNow)
+                .bidPrice(PriceScale.toScaled(mid - halfSpread + skew))
+                .bidSize(1_000_000L * (1 + random.nextInt(10)))
+                .askPrice(PriceScale.toScaled(mid + halfSpread + skew))
+                .askSize(1_000_000L * (1 + random.nextInt(10)));
+
+        if (sink.offer(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength())) {
+            publishedTicks++;
+            return 1;
+        }
+        droppedTicks++;
+        LOGGER.debug("Dropped {} tick seq={} for {}", VENUES[v], seqNum, pairs[p]);
+        return 0;
+    }
+
+    public long publishedTicks() {
+        return publishedTicks;
+    }
+
+    /**
+     * Ticks the sink refused; their sequence numbers were consumed, so they show up as gaps downstream.
+     */
+    public long droppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Sequence numbers deliberately skipped to simulate venue-side gaps.
+     */
+    public long skippedSeqNums() {
+        return skippedSeqNums;
+    }
+
+    @Override
+    public void onClose() {
+        LOGGER.info("Venue tick generator published={} dropped={} skippedSeqNums={}", publishedTicks, droppedTicks, skippedSeqNums);
+    }
+
+    @Override
+    public String roleName() {
+        return "VenueTickGenerator";
+    }
+}
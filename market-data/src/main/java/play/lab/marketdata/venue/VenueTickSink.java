@@ -0,0 +1,28 @@
+package play.lab.marketdata.venue;
+
+import io.aeron.Publication;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Destination for encoded VenueTick messages (header + body).
+ */
+@FunctionalInterface
+public interface VenueTickSink {
+
+    /**
+     * @return false if the tick was not accepted (ring buffer full, publication back-pressured or not connected)
+     */
+    boolean offer(DirectBuffer buffer, int offset, int length);
+
+    /**
+     * In-process sink writing straight into the ticker plant ingress queue.
+     */
+    static VenueTickSink ringBuffer(final RingBuffer ringBuffer, final int msgTypeId) {
+        return (buffer, offset, length) -> ringBuffer.write(msgTypeId, buffer, offset, length);
+    }
+
+    static VenueTickSink publication(final Publication publication) {
+        return (buffer, offset, length) -> publication.offer(buffer, offset, length) > 0;
+    }
+}
@@ -47,8 +47,8 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
             final String user,
             final String password,
             final String tableName,
-            final long fromCreationTsMicrosInclusive,
-            final long toCreationTsMicrosExclusive,
+            final long fromCreationTsNanosInclusive,
+            final long toCreationTsNanosExclusive,
             final int fetchSize
     ) throws SQLException {
         this.out = Objects.requireNonNull(out, "out");
@@ -59,8 +59,8 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
 
         this.ps = conn.prepareStatement(defaultSql(tableName));
         this.ps.setFetchSize(fetchSize);
-        this.ps.setLong(1, fromCreationTsMicrosInclusive);
-        this.ps.setLong(2, toCreationTsMicrosExclusive);
+        this.ps.setLong(1, fromCreationTsNanosInclusive);
+        this.ps.setLong(2, toCreationTsNanosExclusive);
     }
 
     public void stop() {
@@ -110,7 +110,7 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
         }
 
         final CurrencyPair symbol = CurrencyPair.get(rs.getShort(1));
-        final long creationTsMicros = rs.getLong(2);
+        final long creationTsNanos = rs.getLong(2);
         final int tenor = rs.getInt(3);
         final long valueDate = rs.getLong(4);
         final long clientTier = rs.getLong(5);
@@ -121,7 +121,7 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
 
         marketTickEncoder.wrapAndApplyHeader(pubBuf, 0, new MessageHeaderEncoder())
                 .symbol(symbol)
-                .priceCreationTimestamp(creationTsMicros)
+                .priceCreationTimestamp(creationTsNanos)
                 .tenor(tenor)
                 .valueDate(valueDate)
                 .clientTier(clientTier)
@@ -135,7 +135,7 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
         if (result) {
             LOGGER.debug("Published tick for {} @ {}: tenor={}, valueDate={}, tier={}, bid={}, ask={}, vol={} level={}",
                     symbol.name(),
-                    creationTsMicros,
+                    creationTsNanos,
                     tenor,
                     valueDate,
                     clientTier,
@@ -146,7 +146,7 @@ public final class MarketDataReplayer implements Runnable, AutoCloseable {
         } else {
             LOGGER.error("Failed to publish tick for {} @ {}: tenor={}, valueDate={}, tier={}, bid={}, ask={}, vol={} level={}",
                     symbol.name(),
-                    creationTsMicros,
+                    creationTsNanos,
                     tenor,
                     valueDate,
                     clientTier,
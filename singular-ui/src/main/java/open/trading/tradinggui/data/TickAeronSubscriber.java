@@ -15,6 +15,7 @@ import play.lab.model.sbe.QuoteMessageDecoder;
 import pub.lab.trading.common.config.AeronConfigs;
 import pub.lab.trading.common.config.StreamId;
 import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.model.Tenor;
 import pub.lab.trading.common.model.pricing.QuoteView;
 
 public class TickAeronSubscriber implements FragmentHandler, Worker, AutoCloseable {
@@ -39,6 +40,9 @@ public class TickAeronSubscriber implements FragmentHandler, Worker, AutoCloseab
     @Override
     public void onFragment(DirectBuffer buffer, int offset, int length, Header header) {
         quoteView.wrap(buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH);
+        if (quoteView.getTenor() != Tenor.SPOT.getCode()) {
+            return; // tiles show spot, outright forwards share the stream
+        }
 
         CurrencyPair currencyPair = quoteView.getSymbol();
         String symbol = currencyPair.name();
@@ -18,6 +18,7 @@ import pub.lab.trading.common.config.caches.ClientTierConfigCache;
 import pub.lab.trading.common.config.caches.ConfigAgent;
 import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.model.ClientTierLevel;
+import pub.lab.trading.common.model.Tenor;
 import pub.lab.trading.common.model.pricing.QuoteMessageWriter;
 import pub.lab.trading.common.model.pricing.QuoteView;
 
@@ -53,6 +54,9 @@ public class SpotPricerPipe implements Worker {
 
     private void consumeQuotes(DirectBuffer buf, int offset) {
         quoteView.wrap(buf, offset + MessageHeaderDecoder.ENCODED_LENGTH);
+        if (quoteView.getTenor() != Tenor.SPOT.getCode()) {
+            return; // outright forwards share the raw quote stream, they are not priced here
+        }
         CurrencyPair currencyPair = quoteView.getSymbol();
         long timestamp = quoteView.priceCreationTimestamp();
         int tenor = quoteView.getTenor();
@@ -0,0 +1,173 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import io.aeron.Aeron;
+import io.aeron.ChannelUri;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.GoldenTickDecoder;
+import play.lab.model.sbe.MessageHeaderDecoder;
+import play.lab.model.sbe.QuoteMessageDecoder;
+import pub.lab.trading.common.config.StreamId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays the Aeron Archive recordings of one {@link IngestStream} that overlap a time window and writes every
+ * message in the window that its table does not already cover. Messages go through the stream's live subscriber
+ * into a {@link QuestDBWriter} drained on the same thread, so rows land exactly as the ingestor would have written
+ * them, in batches as large as the writer allows.
+ */
+public class ArchiveBackfill implements FragmentHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveBackfill.class);
+
+    // a QuoteMessage is at most a handful of rungs, well inside the writer's queue per poll
+    private static final int FRAGMENT_LIMIT = 1024;
+
+    private final IngestStream stream;
+    private final QuestDBWriter writer;
+    private final FragmentHandler subscriber;
+    private final TableCoverage coverage;
+    private final long fromMicros;
+    private final long toMicros;
+    private final IdleStrategy idleStrategy;
+
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final QuoteMessageDecoder quoteDecoder = new QuoteMessageDecoder();
+    private final GoldenTickDecoder goldenTickDecoder = new GoldenTickDecoder();
+
+    private long replayedMessages;
+    private long writtenMessages;
+    private long coveredMessages;
+    private long outsideWindowMessages;
+
+    public ArchiveBackfill(final IngestStream stream,
+                           final QuestDBWriter writer,
+                           final TableCoverage coverage,
+                           final long fromMicros,
+                           final long toMicros,
+                           final IdleStrategy idleStrategy) {
+        this.stream = stream;
+        this.writer = writer;
+        this.subscriber = stream == IngestStream.GOLDEN_TICK
+                ? new GoldenTickAeronSubscriber(writer, null)
+                : new TickAeronSubscriber(writer, stream, null);
+        this.coverage = coverage;
+        this.fromMicros = fromMicros;
+        this.toMicros = toMicros;
+        this.idleStrategy = idleStrategy;
+    }
+
+    /**
+     * Replays every recording of the stream on {@code recordedChannel} that overlaps the window, oldest first.
+     */
+    public void run(final Aeron aeron, final AeronArchive archive, final String recordedChannel, final String replayChannel) {
+        final List<long[]> recordings = new ArrayList<>();
+        archive.listRecordingsForUri(0, Integer.MAX_VALUE, recordedChannel, stream.getStreamId(),
+                (controlSessionId, correlationId, recordingId,
+                 startTimestamp, stopTimestamp, startPosition,
+                 stopPosition, initialTermId, segmentFileLength,
+                 termBufferLength, mtuLength, sessionId,
+                 streamId, strippedChannel, originalChannel,
+                 sourceIdentity) -> {
+                    // descriptor timestamps are epoch millis, a recording still running has none to stop at
+                    final boolean overlaps = startTimestamp * 1_000 < toMicros
+                            && (stopTimestamp == Aeron.NULL_VALUE || stopTimestamp * 1_000 >= fromMicros);
+                    if (overlaps) {
+                        recordings.add(new long[]{recordingId, startPosition, stopPosition});
+                    }
+                });
+        LOGGER.info("{}: {} recordings on {} overlap the window", stream, recordings.size(), recordedChannel);
+        recordings.sort((a, b) -> Long.compare(a[0], b[0]));
+        for (long[] recording : recordings) {
+            final long recordingId = recording[0];
+            final long startPosition = recording[1];
+            final long stopPosition = recording[2] == AeronArchive.NULL_POSITION
+                    ? archive.getRecordingPosition(recordingId)
+                    : recording[2];
+            if (stopPosition > startPosition) {
+                replay(aeron, archive, replayChannel, recordingId, startPosition, stopPosition);
+            }
+        }
+    }
+
+    private void replay(final Aeron aeron,
+                        final AeronArchive archive,
+                        final String replayChannel,
+                        final long recordingId,
+                        final long startPosition,
+                        final long stopPosition) {
+        LOGGER.info("{}: replaying recordingId={} {}->{}", stream, recordingId, startPosition, stopPosition);
+        // not the recorded stream id, IPC ignores the endpoint and a running ingestor would record the replay again
+        final int replayStreamId = StreamId.DATA_TICK_BACKFILL.getCode();
+        final int sessionId = (int) archive.startReplay(
+                recordingId, startPosition, stopPosition - startPosition, replayChannel, replayStreamId);
+        try (Subscription sub = aeron.addSubscription(ChannelUri.addSessionId(replayChannel, sessionId), replayStreamId)) {
+            Image image;
+            while ((image = sub.imageBySessionId(sessionId)) == null) {
+                idleStrategy.idle();
+            }
+            while (image.position() < stopPosition && !image.isEndOfStream() && !image.isClosed()) {
+                int work = image.poll(this, FRAGMENT_LIMIT);
+                int rows;
+                while ((rows = writer.doWork()) > 0) {
+                    work += rows;
+                }
+                idleStrategy.idle(work);
+            }
+        }
+    }
+
+    @Override
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header) {
+        replayedMessages++;
+        headerDecoder.wrap(buffer, offset);
+        // both are epoch nanos, the window and QuestDB's timestamps are epoch micros
+        final long eventTimeNanos;
+        if (headerDecoder.templateId() == QuoteMessageDecoder.TEMPLATE_ID) {
+            eventTimeNanos = quoteDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder).priceCreationTimestamp();
+        } else if (headerDecoder.templateId() == GoldenTickDecoder.TEMPLATE_ID) {
+            eventTimeNanos = goldenTickDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder).tpTimestamp();
+        } else {
+            return;
+        }
+        final long eventTimeMicros = eventTimeNanos / 1_000;
+        if (eventTimeMicros < fromMicros || eventTimeMicros >= toMicros) {
+            outsideWindowMessages++;
+        } else if (coverage.covers(eventTimeMicros)) {
+            coveredMessages++;
+        } else {
+            writtenMessages++;
+            subscriber.onFragment(buffer, offset, length, header);
+        }
+    }
+
+    public long replayedMessages() {
+        return replayedMessages;
+    }
+
+    /**
+     * Messages handed to the writer, one row per quote rung.
+     */
+    public long writtenMessages() {
+        return writtenMessages;
+    }
+
+    /**
+     * Messages skipped because their table already has rows around that time.
+     */
+    public long coveredMessages() {
+        return coveredMessages;
+    }
+
+    public long outsideWindowMessages() {
+        return outsideWindowMessages;
+    }
+}
@@ -0,0 +1,72 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.GoldenTickDecoder;
+import play.lab.model.sbe.MessageHeaderDecoder;
+import pub.lab.trading.common.lifecycle.Worker;
+
+/**
+ * Writes the ticker plant's GoldenTicks to {@link IngestStream#GOLDEN_TICK}'s table, stamped with tpTimestamp.
+ */
+public class GoldenTickAeronSubscriber implements FragmentHandler, Worker, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GoldenTickAeronSubscriber.class);
+
+    private final QuestDBWriter writer;
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final GoldenTickDecoder decoder = new GoldenTickDecoder();
+    private final Subscription sub;
+
+    /**
+     * @param sub closed with the subscriber, null when fragments are pushed in directly
+     */
+    public GoldenTickAeronSubscriber(QuestDBWriter writer, Subscription sub) {
+        this.writer = writer;
+        this.sub = sub;
+    }
+
+    @Override
+    public void onFragment(DirectBuffer buffer, int offset, int length, Header header) {
+        headerDecoder.wrap(buffer, offset);
+        if (headerDecoder.templateId() != GoldenTickDecoder.TEMPLATE_ID) {
+            return;
+        }
+        decoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        writer.writeGoldenTick(
+                decoder.globalSeqNum(),
+                decoder.securityId(),
+                decoder.bestBidPrice(),
+                decoder.bestBidVenueRaw(),
+                decoder.bestAskPrice(),
+                decoder.bestAskVenueRaw(),
+                decoder.tpTimestamp(),
+                decoder.marketStateRaw()
+        );
+    }
+
+    @Override
+    public int doWork() {
+        return sub.poll(this, 10);
+    }
+
+    @Override
+    public String roleName() {
+        return "GoldenTickIngestionAeronSubscriber";
+    }
+
+    @Override
+    public void onClose() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info("Closing {}...", roleName());
+        CloseHelper.close(sub);
+    }
+}
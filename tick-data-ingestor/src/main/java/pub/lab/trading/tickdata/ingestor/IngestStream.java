@@ -0,0 +1,53 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.model.ClientTierLevel;
+
+/**
+ * The Aeron streams the ingestor can record and the QuestDB table each one lands in. The quote streams carry
+ * QuoteMessage, {@link #GOLDEN_TICK} carries the ticker plant's GoldenTick. Select them with
+ * {@code -Dingestor.streams}, e.g. {@code RAW_QUOTE,MARKET_QUOTE_GOLD,GOLDEN_TICK}.
+ */
+public enum IngestStream {
+    RAW_QUOTE(StreamId.DATA_RAW_QUOTE.getCode(), "quote_ticks"),
+    // published per tier by the spot pricing engine, on DATA_MARKET_QUOTE + tier id
+    MARKET_QUOTE_BRONZE(StreamId.DATA_MARKET_QUOTE.getCode() + ClientTierLevel.BRONZE.getId(), "market_quote_ticks_bronze"),
+    MARKET_QUOTE_SILVER(StreamId.DATA_MARKET_QUOTE.getCode() + ClientTierLevel.SILVER.getId(), "market_quote_ticks_silver"),
+    MARKET_QUOTE_GOLD(StreamId.DATA_MARKET_QUOTE.getCode() + ClientTierLevel.GOLD.getId(), "market_quote_ticks_gold"),
+    MARKET_QUOTE_PLATINUM(StreamId.DATA_MARKET_QUOTE.getCode() + ClientTierLevel.PLATINUM.getId(), "market_quote_ticks_platinum"),
+    GOLDEN_TICK(StreamId.DATA_GOLDEN_TICK.getCode(), "golden_ticks");
+
+    private static final IngestStream[] VALUES = values();
+
+    private final int streamId;
+    private final String table;
+
+    IngestStream(int streamId, String table) {
+        this.streamId = streamId;
+        this.table = table;
+    }
+
+    /**
+     * By ordinal, as carried in a {@link MarketTickCodec} record.
+     */
+    public static IngestStream get(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public static IngestStream fromStreamId(int streamId) {
+        for (IngestStream stream : VALUES) {
+            if (stream.streamId == streamId) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public String getTable() {
+        return table;
+    }
+}
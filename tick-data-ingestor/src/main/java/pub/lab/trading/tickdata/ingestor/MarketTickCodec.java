@@ -1,23 +1,101 @@
 package pub.lab.trading.tickdata.ingestor;
 
 import io.questdb.client.Sender;
+import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.MarketState;
+import play.lab.model.sbe.VenueID;
+import pub.lab.trading.common.util.PriceScale;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * One row on its way from the Aeron fragment to the ILP buffer, a quote rung or a GoldenTick, tagged with the
+ * {@link IngestStream} that decides its table. Symbols travel as the CurrencyPair value (uint8) and enums as their
+ * raw value, and are written to QuestDB from tables of names built once, so neither side allocates. Each row's
+ * designated timestamp is its event time: priceCreationTimestamp for quotes, tpTimestamp for GoldenTicks.
+ * <pre>
+ *   quote                                      golden tick
+ *   0 uint8  symbol, CurrencyPair value         0 uint8  marketState
+ *   1 uint8  IngestStream ordinal               1 uint8  IngestStream ordinal
+ *   2 uint16 level                              2 uint8  bestBidVenue, VenueID value
+ *                                               3 uint8  bestAskVenue, VenueID value
+ *   4 int    tenor                              4 int    securityId, CurrencyPair value
+ *   8 long   priceCreationTimestamp, epoch ns   8 long   tpTimestamp, epoch ns
+ *  16 long   valueDate                         16 long   globalSeqNum
+ *  24 long   clientTier
+ *  32 double bid                               32 long   bestBidPrice, PriceScale
+ *  40 double ask                               40 long   bestAskPrice, PriceScale
+ *  48 double volume
+ * </pre>
+ */
 public class MarketTickCodec {
-    public static final int MAX_SYMBOL_BYTES = 32;
     private static final Logger LOGGER = LoggerFactory.getLogger(MarketTickCodec.class);
-    private final MutableDirectBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(1024));
+
+    private static final int SYMBOL_OFFSET = 0;
+    private static final int STREAM_OFFSET = 1;
+    private static final int LEVEL_OFFSET = 2;
+    private static final int TENOR_OFFSET = 4;
+    private static final int CREATION_TS_OFFSET = 8;
+    private static final int VALUE_DATE_OFFSET = 16;
+    private static final int CLIENT_TIER_OFFSET = 24;
+    private static final int BID_OFFSET = 32;
+    private static final int ASK_OFFSET = 40;
+    private static final int VOLUME_OFFSET = 48;
+
+    private static final int MARKET_STATE_OFFSET = 0;
+    private static final int BID_VENUE_OFFSET = 2;
+    private static final int ASK_VENUE_OFFSET = 3;
+    private static final int SECURITY_ID_OFFSET = 4;
+    private static final int TP_TS_OFFSET = 8;
+    private static final int GLOBAL_SEQ_OFFSET = 16;
+    private static final int BEST_BID_OFFSET = 32;
+    private static final int BEST_ASK_OFFSET = 40;
+
+    public static final int ENCODED_LENGTH = 56;
+
+    private static final CharSequence[] SYMBOLS = new CharSequence[256];
+    private static final CharSequence[] VENUES = new CharSequence[256];
+    private static final CharSequence[] MARKET_STATES = new CharSequence[256];
+
+    static {
+        for (CurrencyPair pair : CurrencyPair.values()) {
+            if (pair != CurrencyPair.NULL_VAL) {
+                SYMBOLS[pair.value()] = pair.name();
+            }
+        }
+        for (VenueID venue : VenueID.values()) {
+            VENUES[venue.value()] = venue.name();
+        }
+        for (MarketState state : MarketState.values()) {
+            MARKET_STATES[state.value()] = state.name();
+        }
+    }
+
+    private final MutableDirectBuffer buffer = new UnsafeBuffer(new byte[ENCODED_LENGTH]);
+
+    /**
+     * The encoded record, {@link #ENCODED_LENGTH} bytes from 0.
+     */
+    public DirectBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Loads a record encoded by another codec, e.g. read back from a {@link SpillFile}.
+     */
+    public void copyFrom(final DirectBuffer source, final int offset) {
+        buffer.putBytes(0, source, offset, ENCODED_LENGTH);
+    }
 
     public void encode(
-            final int offset,
-            final String symbol,
-            final long creationTsMicros,
+            final IngestStream stream,
+            final CurrencyPair symbol,
+            final long creationTsNanos,
             final int tenor,
             final long valueDate,
             final long clientTier,
@@ -26,76 +104,65 @@ public class MarketTickCodec {
             final double volume,
             final int level
     ) {
-        // Encode symbol as UTF-8 with length prefix
-        final byte[] sym = symbol.getBytes(StandardCharsets.UTF_8);
-        if (sym.length > MAX_SYMBOL_BYTES) {
-            throw new IllegalArgumentException("symbol too long: " + sym.length);
-        }
-
-        int p = offset;
-        buffer.putInt(p, sym.length);
-        p += Integer.BYTES;
-
-        buffer.putBytes(p, sym);
-        p += sym.length;
-
-        buffer.putLong(p, creationTsMicros);
-        p += Long.BYTES;
-        buffer.putInt(p, tenor);
-        p += Integer.BYTES;
-        buffer.putLong(p, valueDate);
-        p += Long.BYTES;
-        buffer.putLong(p, clientTier);
-        p += Long.BYTES;
-
-        buffer.putDouble(p, bid);
-        p += Double.BYTES;
-        buffer.putDouble(p, ask);
-        p += Double.BYTES;
-        buffer.putDouble(p, volume);
-        p += Double.BYTES;
+        buffer.putByte(SYMBOL_OFFSET, (byte) symbol.value());
+        buffer.putByte(STREAM_OFFSET, (byte) stream.ordinal());
+        buffer.putShort(LEVEL_OFFSET, (short) level);
+        buffer.putInt(TENOR_OFFSET, tenor);
+        buffer.putLong(CREATION_TS_OFFSET, creationTsNanos);
+        buffer.putLong(VALUE_DATE_OFFSET, valueDate);
+        buffer.putLong(CLIENT_TIER_OFFSET, clientTier);
+        buffer.putDouble(BID_OFFSET, bid);
+        buffer.putDouble(ASK_OFFSET, ask);
+        buffer.putDouble(VOLUME_OFFSET, volume);
+    }
 
-        buffer.putInt(p, level);
+    public void encodeGoldenTick(
+            final long globalSeqNum,
+            final long securityId,
+            final long bestBidPrice,
+            final short bestBidVenue,
+            final long bestAskPrice,
+            final short bestAskVenue,
+            final long tpTimestamp,
+            final short marketState
+    ) {
+        buffer.putByte(MARKET_STATE_OFFSET, (byte) marketState);
+        buffer.putByte(STREAM_OFFSET, (byte) IngestStream.GOLDEN_TICK.ordinal());
+        buffer.putByte(BID_VENUE_OFFSET, (byte) bestBidVenue);
+        buffer.putByte(ASK_VENUE_OFFSET, (byte) bestAskVenue);
+        buffer.putInt(SECURITY_ID_OFFSET, (int) securityId);
+        buffer.putLong(TP_TS_OFFSET, tpTimestamp);
+        buffer.putLong(GLOBAL_SEQ_OFFSET, globalSeqNum);
+        buffer.putLong(BEST_BID_OFFSET, bestBidPrice);
+        buffer.putLong(BEST_ASK_OFFSET, bestAskPrice);
+    }
 
+    public IngestStream stream() {
+        return IngestStream.get(buffer.getByte(STREAM_OFFSET) & 0xFF);
     }
 
     public int decodeAndSend(final Sender sender) {
-        int p = 0;
-
-        final int symLen = buffer.getInt(p);
-        p += Integer.BYTES;
-
-        if (symLen < 0 || symLen > MAX_SYMBOL_BYTES) {
-            throw new IllegalArgumentException("bad symbolLen=" + symLen);
+        final IngestStream stream = stream();
+        if (stream == IngestStream.GOLDEN_TICK) {
+            return sendGoldenTick(sender);
         }
-
-        final byte[] symBytes = new byte[symLen];
-        buffer.getBytes(p, symBytes);
-        p += symLen;
-
-        final String symbol = new String(symBytes, StandardCharsets.UTF_8);
-
-        final long creationTsMicros = buffer.getLong(p);
-        p += Long.BYTES;
-        final long tenor = buffer.getInt(p);
-        p += Integer.BYTES;
-        final long valueDate = buffer.getLong(p);
-        p += Long.BYTES;
-        final long clientTier = buffer.getLong(p);
-        p += Long.BYTES;
-
-        final double bid = buffer.getDouble(p);
-        p += Double.BYTES;
-        final double ask = buffer.getDouble(p);
-        p += Double.BYTES;
-        final double volume = buffer.getDouble(p);
-        p += Double.BYTES;
-
-        final long level = buffer.getInt(p);
-
-        sender.table("quote_ticks")
+        final int symbolValue = buffer.getByte(SYMBOL_OFFSET) & 0xFF;
+        final CharSequence symbol = SYMBOLS[symbolValue];
+        if (symbol == null) {
+            throw new IllegalArgumentException("bad symbol=" + symbolValue);
+        }
+        final long level = buffer.getShort(LEVEL_OFFSET) & 0xFFFF;
+        final long tenor = buffer.getInt(TENOR_OFFSET);
+        final long creationTsNanos = buffer.getLong(CREATION_TS_OFFSET);
+        final long valueDate = buffer.getLong(VALUE_DATE_OFFSET);
+        final long clientTier = buffer.getLong(CLIENT_TIER_OFFSET);
+        final double bid = buffer.getDouble(BID_OFFSET);
+        final double ask = buffer.getDouble(ASK_OFFSET);
+        final double volume = buffer.getDouble(VOLUME_OFFSET);
+
+        sender.table(stream.getTable())
                 .symbol("symbol", symbol)
-                .longColumn("priceCreationTimestamp", creationTsMicros) // micros
+                .longColumn("priceCreationTimestamp", creationTsNanos)
                 .longColumn("tenor", tenor)
                 .longColumn("valueDate", valueDate)
                 .longColumn("clientTier", clientTier)
@@ -103,17 +170,51 @@ public class MarketTickCodec {
                 .doubleColumn("ask", ask)
                 .doubleColumn("volume", volume)
                 .longColumn("level", level)
-                .atNow(); // Use ingestion time as designated timestamp
-        LOGGER.debug("Wrote tick to QuestDB: {} @ {} tenor={} valueDate={} tier={} bid={} ask={} vol={} level={}",
-                symbol,
-                creationTsMicros,
-                tenor,
-                valueDate,
-                clientTier,
-                bid,
-                ask,
-                volume,
-                level);
-        return p;
+                .at(creationTsNanos, ChronoUnit.NANOS);
+        if (LOGGER.isDebugEnabled()) { // varargs and boxing otherwise allocate on every tick
+            LOGGER.debug("Wrote tick to {}: {} @ {} tenor={} valueDate={} tier={} bid={} ask={} vol={} level={}",
+                    stream.getTable(),
+                    symbol,
+                    creationTsNanos,
+                    tenor,
+                    valueDate,
+                    clientTier,
+                    bid,
+                    ask,
+                    volume,
+                    level);
+        }
+        return ENCODED_LENGTH;
+    }
+
+    private int sendGoldenTick(final Sender sender) {
+        final int securityId = buffer.getInt(SECURITY_ID_OFFSET);
+        final long tpTimestamp = buffer.getLong(TP_TS_OFFSET);
+        final long globalSeqNum = buffer.getLong(GLOBAL_SEQ_OFFSET);
+        final double bestBid = PriceScale.toDouble(buffer.getLong(BEST_BID_OFFSET));
+        final double bestAsk = PriceScale.toDouble(buffer.getLong(BEST_ASK_OFFSET));
+        final CharSequence symbol = securityId >= 0 && securityId < SYMBOLS.length ? SYMBOLS[securityId] : null;
+
+        sender.table(IngestStream.GOLDEN_TICK.getTable());
+        if (symbol != null) {
+            sender.symbol("symbol", symbol);
+        }
+        sender.symbol("bestBidVenue", nameOf(VENUES, buffer.getByte(BID_VENUE_OFFSET)))
+                .symbol("bestAskVenue", nameOf(VENUES, buffer.getByte(ASK_VENUE_OFFSET)))
+                .symbol("marketState", nameOf(MARKET_STATES, buffer.getByte(MARKET_STATE_OFFSET)))
+                .longColumn("securityId", securityId)
+                .longColumn("globalSeqNum", globalSeqNum)
+                .doubleColumn("bestBid", bestBid)
+                .doubleColumn("bestAsk", bestAsk)
+                .at(tpTimestamp, ChronoUnit.NANOS);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Wrote golden tick: {} seq={} @ {} bid={} ask={}", securityId, globalSeqNum, tpTimestamp, bestBid, bestAsk);
+        }
+        return ENCODED_LENGTH;
+    }
+
+    private static CharSequence nameOf(final CharSequence[] names, final byte value) {
+        final CharSequence name = names[value & 0xFF];
+        return name == null ? "UNKNOWN" : name;
     }
 }
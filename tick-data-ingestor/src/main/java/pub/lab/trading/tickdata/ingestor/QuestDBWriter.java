@@ -1,48 +1,314 @@
 package pub.lab.trading.tickdata.ingestor;
 
 import io.questdb.client.Sender;
+import org.agrona.CloseHelper;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.NanoClock;
 import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import pub.lab.trading.common.lifecycle.ArrayObjectPool;
+import play.lab.model.sbe.CurrencyPair;
 import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains queued quotes into the ILP sender and flushes in batches: after {@code maxBatchRows} rows or once the
+ * oldest unflushed row is {@code maxBatchDelayNanos} old, whichever comes first. Every duty cycle drains the queue
+ * to empty, so a burst goes out in as few flushes as the batch size allows.
+ * <p>
+ * {@link #writeQuote} and {@link #writeGoldenTick} run on the Aeron thread, which polls every subscribed stream, and
+ * {@link #doWork()} on the writer's own, handing codecs over two SPSC queues: pending rows one way, free codecs back.
+ * Each row carries its {@link IngestStream}, which picks the table. All codecs are created up front, so when the
+ * writer falls behind the Aeron thread finds no free codec and never waits. The row then goes to the overflow spill
+ * file if there is one, and every later row follows it there until the writer has replayed the file, which keeps
+ * rows in arrival order. Without a spill file, or with a full one, the row is dropped and counted.
+ * <p>
+ * A copy of every row sent since the last flush is kept. When a write or flush fails the connection is dropped and
+ * that batch is held for retry; rows then park in the outage spill file, also in order, and the writer reconnects
+ * every {@code reconnectIntervalNanos}. Once back it sends the retry batch, then the outage spill, and only then new
+ * rows. Delivery is at least once: rows QuestDB received just before the failure are sent again.
+ */
 public class QuestDBWriter implements AutoCloseable, Worker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QuestDBWriter.class);
 
-    private final OneToOneConcurrentArrayQueue<MarketTickCodec> marketTickCodecs = new OneToOneConcurrentArrayQueue<>(256);
-    private final ArrayObjectPool<MarketTickCodec> marketTickCodecObjectPool = new ArrayObjectPool<>("MarketTickCodec-Pool", MarketTickCodec::new);
+    public static final int DEFAULT_MAX_BATCH_ROWS = 10_000;
+    public static final long DEFAULT_MAX_BATCH_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_RECONNECT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final OneToOneConcurrentArrayQueue<MarketTickCodec> pendingCodecs;
+    private final OneToOneConcurrentArrayQueue<MarketTickCodec> freeCodecs;
+    private final SpillFile overflowSpill;
+    private final SpillFile outageSpill;
     // Configured for ILP over TCP/HTTP
-    private final Sender sender;
+    private final String config;
+    private final NanoClock clock;
+    private final int maxBatchRows;
+    private final long maxBatchDelayNanos;
+    private final long reconnectIntervalNanos;
+    private final int drainLimit;
+
+    // Aeron thread
+    private final MarketTickCodec overflowCodec = new MarketTickCodec();
+    private boolean spilling;
+    private long overflows;
+    private long droppedQuotes;
+
+    // writer thread
+    private Sender sender;
+    private long nextConnectNanos;
+    private final MarketTickCodec replayCodec = new MarketTickCodec();
+    private final MessageHandler spillReplayHandler = this::onSpilledQuote;
+    private final MessageHandler outageReplayHandler = this::onParkedRow;
+    private UnsafeBuffer unflushedBatch;
+    private UnsafeBuffer retryBatch;
+    private int retryRows;
+    private int unflushedRows;
+    private long firstUnflushedNanos;
+    private long flushes;
+    private long flushedRows;
+    private int maxRowsPerFlush;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+    private long disconnects;
+    private long parkedRows;
+    private long resentRows;
+    private long lostRows;
 
     public QuestDBWriter(String config) {
-        this.sender = Sender.fromConfig(config);
+        this(config, new CachedClock(), DEFAULT_MAX_BATCH_ROWS, DEFAULT_MAX_BATCH_DELAY_NANOS, DEFAULT_QUEUE_CAPACITY,
+                null, null, DEFAULT_RECONNECT_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param queueCapacity quotes the writer can fall behind by before overflowing
+     * @param overflowSpill takes quotes when the queue is full, null to drop them
+     * @param outageSpill   takes rows while QuestDB is unreachable, null to drop them
+     */
+    public QuestDBWriter(String config,
+                         NanoClock clock,
+                         int maxBatchRows,
+                         long maxBatchDelayNanos,
+                         int queueCapacity,
+                         SpillFile overflowSpill,
+                         SpillFile outageSpill,
+                         long reconnectIntervalNanos) {
+        this.config = config;
+        this.clock = clock;
+        this.maxBatchRows = maxBatchRows;
+        this.maxBatchDelayNanos = maxBatchDelayNanos;
+        this.reconnectIntervalNanos = reconnectIntervalNanos;
+        this.overflowSpill = overflowSpill;
+        this.outageSpill = outageSpill;
+        this.spilling = overflowSpill != null && !overflowSpill.isEmpty();
+        this.unflushedBatch = new UnsafeBuffer(new byte[maxBatchRows * MarketTickCodec.ENCODED_LENGTH]);
+        this.retryBatch = new UnsafeBuffer(new byte[maxBatchRows * MarketTickCodec.ENCODED_LENGTH]);
+        this.pendingCodecs = new OneToOneConcurrentArrayQueue<>(queueCapacity);
+        this.freeCodecs = new OneToOneConcurrentArrayQueue<>(queueCapacity);
+        for (int i = 0, n = freeCodecs.capacity(); i < n; i++) {
+            freeCodecs.offer(new MarketTickCodec());
+        }
+        this.drainLimit = pendingCodecs.capacity();
+        connect(clock.nanoTime());
+    }
+
+    private void connect(long now) {
+        try {
+            sender = Sender.fromConfig(config);
+            LOGGER.info("Connected to QuestDB");
+        } catch (RuntimeException e) {
+            nextConnectNanos = now + reconnectIntervalNanos;
+            LOGGER.warn("Cannot connect to QuestDB, retrying in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(reconnectIntervalNanos), e.getMessage());
+        }
     }
 
+    /**
+     * Keeps the rows of the failed batch for retry and parks everything after them until QuestDB is back.
+     */
+    private void onConnectionLost(RuntimeException cause) {
+        disconnects++;
+        LOGGER.warn("Lost QuestDB connection, {} rows held for retry: {}", unflushedRows, cause.getMessage());
+        if (unflushedRows > 0) {
+            // the retry batch is empty here, rows only go out once it has been resent
+            final UnsafeBuffer failed = unflushedBatch;
+            unflushedBatch = retryBatch;
+            retryBatch = failed;
+            retryRows = unflushedRows;
+            unflushedRows = 0;
+        }
+        CloseHelper.quietClose(sender);
+        sender = null;
+        nextConnectNanos = clock.nanoTime() + reconnectIntervalNanos;
+    }
+
+    /**
+     * Sends the rows written since the last flush, if any.
+     */
     public void flush() {
-        sender.flush();
+        if (unflushedRows == 0 || sender == null) {
+            return;
+        }
+        final long start = clock.nanoTime();
+        try {
+            sender.flush();
+        } catch (RuntimeException e) {
+            onConnectionLost(e);
+            return;
+        }
+        final long elapsed = clock.nanoTime() - start;
+        flushes++;
+        flushedRows += unflushedRows;
+        maxRowsPerFlush = Math.max(maxRowsPerFlush, unflushedRows);
+        totalFlushNanos += elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        unflushedRows = 0;
     }
 
+    /**
+     * Writes out what is still queued or spilled, once the Aeron thread has stopped.
+     */
     @Override
     public void close() {
-        sender.close();
+        while (doWork() > 0) {
+            // drain
+        }
+        flush();
+        if (retryRows > 0) {
+            lostRows += retryRows;
+            LOGGER.warn("{} rows not delivered, QuestDB unreachable at shutdown", retryRows);
+        }
+        LOGGER.info("Closing QuestDBWriter, overflows={} spilled={} droppedQuotes={} disconnects={} parkedRows={} resentRows={} lostRows={} flushes={} flushedRows={} avgRowsPerFlush={} maxRowsPerFlush={} avgFlushMicros={} maxFlushMicros={}",
+                overflows,
+                overflowSpill == null ? 0 : overflowSpill.appended(),
+                droppedQuotes,
+                disconnects,
+                parkedRows,
+                resentRows,
+                lostRows,
+                flushes,
+                flushedRows,
+                flushes == 0 ? 0 : flushedRows / flushes,
+                maxRowsPerFlush,
+                flushes == 0 ? 0 : totalFlushNanos / flushes / 1_000,
+                maxFlushNanos / 1_000);
+        CloseHelper.quietClose(sender);
+        CloseHelper.closeAll(overflowSpill, outageSpill);
     }
 
     @Override
     public int doWork() {
-        MarketTickCodec pooledReusableCodec = marketTickCodecs.poll();
-        if (pooledReusableCodec != null) {
+        int rows = 0;
+        if (sender == null && clock.nanoTime() >= nextConnectNanos) {
+            connect(clock.nanoTime());
+        }
+        // oldest first: the batch that failed, rows parked during the outage, then the queue
+        if (sender != null && retryRows > 0) {
+            rows += resendRetryBatch();
+        }
+        // one at a time, so a row is never parked again behind rows still unread
+        while (rows < drainLimit && sender != null && retryRows == 0 && outageSpill != null
+                && outageSpill.replay(outageReplayHandler, 1) > 0) {
+            rows++;
+        }
+        MarketTickCodec codec;
+        // queued quotes are older than anything in the overflow spill file
+        while (rows < drainLimit && (codec = pendingCodecs.poll()) != null) {
             try {
-                return pooledReusableCodec.decodeAndSend(sender);
+                write(codec);
             } finally {
-                marketTickCodecObjectPool.release(pooledReusableCodec);
+                freeCodecs.offer(codec);
             }
+            rows++;
+        }
+        if (overflowSpill != null && rows < drainLimit) {
+            rows += overflowSpill.replay(spillReplayHandler, drainLimit - rows);
+        }
+        if (unflushedRows > 0 && clock.nanoTime() - firstUnflushedNanos >= maxBatchDelayNanos) {
+            flush();
+        }
+        return rows;
+    }
+
+    private int resendRetryBatch() {
+        final int rows = retryRows;
+        try {
+            for (int i = 0; i < rows; i++) {
+                replayCodec.copyFrom(retryBatch, i * MarketTickCodec.ENCODED_LENGTH);
+                replayCodec.decodeAndSend(sender);
+            }
+            sender.flush();
+        } catch (RuntimeException e) {
+            onConnectionLost(e); // the retry batch stays as it is
+            return 0;
+        }
+        retryRows = 0;
+        resentRows += rows;
+        flushes++;
+        flushedRows += rows;
+        LOGGER.info("Resent {} rows after reconnecting to QuestDB", rows);
+        return rows;
+    }
+
+    private void onSpilledQuote(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+        replayCodec.copyFrom(buffer, index);
+        write(replayCodec);
+    }
+
+    private void onParkedRow(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+        replayCodec.copyFrom(buffer, index);
+        send(replayCodec);
+    }
+
+    /**
+     * Sends the row, or parks it while QuestDB is down or older rows are still waiting.
+     */
+    private void write(MarketTickCodec codec) {
+        if (sender == null || retryRows > 0 || (outageSpill != null && !outageSpill.isEmpty())) {
+            park(codec);
+        } else {
+            send(codec);
+        }
+    }
+
+    private void send(MarketTickCodec codec) {
+        unflushedBatch.putBytes(unflushedRows * MarketTickCodec.ENCODED_LENGTH, codec.buffer(), 0, MarketTickCodec.ENCODED_LENGTH);
+        try {
+            codec.decodeAndSend(sender);
+        } catch (RuntimeException e) {
+            unflushedRows++; // may be half written, retried with the batch
+            onConnectionLost(e);
+            return;
+        }
+        onRowWritten();
+    }
+
+    private void park(MarketTickCodec codec) {
+        if (outageSpill != null && outageSpill.append(codec)) {
+            parkedRows++;
+        } else {
+            lostRows++;
         }
-        return 0;
     }
 
-    public void writeQuote(String name,
+    private void onRowWritten() {
+        if (unflushedRows++ == 0) {
+            firstUnflushedNanos = clock.nanoTime();
+        }
+        if (unflushedRows >= maxBatchRows) {
+            flush();
+        }
+    }
+
+    /**
+     * One quote rung for the stream's table, on the Aeron thread.
+     */
+    public void writeQuote(IngestStream stream,
+                           CurrencyPair symbol,
                            long timestamp,
                            int tenor,
                            long valueDate,
@@ -51,11 +317,11 @@ public class QuestDBWriter implements AutoCloseable, Worker {
                            double ask,
                            double volume,
                            short i) {
-        MarketTickCodec pooledReusableCodec = marketTickCodecObjectPool.get();
+        final MarketTickCodec codec = claim();
         try {
-            pooledReusableCodec.encode(
-                    0,
-                    name,
+            codec.encode(
+                    stream,
+                    symbol,
                     timestamp,
                     tenor,
                     valueDate,
@@ -65,9 +331,16 @@ public class QuestDBWriter implements AutoCloseable, Worker {
                     volume,
                     i
             );
-            marketTickCodecs.offer(pooledReusableCodec);
-            LOGGER.debug("Queued tick for {} @ {}: tenor={}, valueDate={}, tier={}, bid={}, ask={}, vol={} level={}",
-                    name,
+        } catch (Exception e) {
+            release(codec);
+            LOGGER.error("Failed to encode market tick {}", symbol, e);
+            return;
+        }
+        commit(codec);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Queued tick for {} {} @ {}: tenor={}, valueDate={}, tier={}, bid={}, ask={}, vol={} level={}",
+                    stream,
+                    symbol,
                     timestamp,
                     tenor,
                     valueDate,
@@ -76,11 +349,121 @@ public class QuestDBWriter implements AutoCloseable, Worker {
                     ask,
                     volume,
                     i);
-        } catch (Exception e) {
-            LOGGER.error("Failed to encode market tick {}", pooledReusableCodec, e);
         }
     }
 
+    /**
+     * One GoldenTick, on the Aeron thread. Prices stay in {@code PriceScale} until written.
+     */
+    public void writeGoldenTick(long globalSeqNum,
+                                long securityId,
+                                long bestBidPrice,
+                                short bestBidVenue,
+                                long bestAskPrice,
+                                short bestAskVenue,
+                                long tpTimestamp,
+                                short marketState) {
+        final MarketTickCodec codec = claim();
+        codec.encodeGoldenTick(globalSeqNum, securityId, bestBidPrice, bestBidVenue, bestAskPrice, bestAskVenue, tpTimestamp, marketState);
+        commit(codec);
+    }
+
+    /**
+     * A free codec, or the overflow codec while the queue is full or the overflow spill still holds quotes.
+     */
+    private MarketTickCodec claim() {
+        if (spilling) {
+            if (!overflowSpill.isEmpty()) {
+                return overflowCodec;
+            }
+            spilling = false;
+        }
+        final MarketTickCodec codec = freeCodecs.poll();
+        if (codec == null) {
+            overflows++;
+            return overflowCodec;
+        }
+        return codec;
+    }
+
+    private void commit(MarketTickCodec codec) {
+        if (codec != overflowCodec) {
+            pendingCodecs.offer(codec); // never full, there are only as many codecs as slots
+        } else if (overflowSpill != null && overflowSpill.append(codec)) {
+            spilling = true;
+        } else {
+            droppedQuotes++;
+        }
+    }
+
+    private void release(MarketTickCodec codec) {
+        if (codec != overflowCodec) {
+            freeCodecs.offer(codec);
+        }
+    }
+
+    /**
+     * Times the Aeron thread found the queue full.
+     */
+    public long overflows() {
+        return overflows;
+    }
+
+    /**
+     * Rows lost because the queue and the spill file were full.
+     */
+    public long droppedQuotes() {
+        return droppedQuotes;
+    }
+
+    public long disconnects() {
+        return disconnects;
+    }
+
+    /**
+     * Rows written to the outage spill file while QuestDB was unreachable.
+     */
+    public long parkedRows() {
+        return parkedRows;
+    }
+
+    /**
+     * Rows of failed batches sent again after reconnecting.
+     */
+    public long resentRows() {
+        return resentRows;
+    }
+
+    /**
+     * Rows QuestDB never got: no outage spill file, a full one, or unreachable at shutdown.
+     */
+    public long lostRows() {
+        return lostRows;
+    }
+
+    public long flushes() {
+        return flushes;
+    }
+
+    public long flushedRows() {
+        return flushedRows;
+    }
+
+    public int maxRowsPerFlush() {
+        return maxRowsPerFlush;
+    }
+
+    /**
+     * Time spent in {@code Sender.flush}, summed over all flushes.
+     */
+    public long totalFlushNanos() {
+        return totalFlushNanos;
+    }
+
+    public long maxFlushNanos() {
+        return maxFlushNanos;
+    }
+
     @Override
     public String roleName() {
         return "QuestDBWriter";
@@ -0,0 +1,114 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Quotes that could not take the normal path, kept in arrival order in a memory-mapped file: a
+ * {@link OneToOneRingBuffer} of {@link MarketTickCodec} records laid over the mapping, so one thread can append while
+ * another replays. An append is a copy into the page cache, cheap enough for the Aeron thread. When the file is full
+ * the quote is refused and the caller counts it as lost.
+ * <p>
+ * The ring buffer keeps its positions in the file, so a file left with records by the last run is reopened as is
+ * and replays them first. An empty file is deleted on close.
+ */
+public class SpillFile implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillFile.class);
+
+    /**
+     * Largest power of two that leaves room for the ring buffer trailer in an int-sized mapping.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int QUOTE_MSG_TYPE_ID = 1;
+
+    private final File file;
+    private final MappedByteBuffer mappedBuffer;
+    private final OneToOneRingBuffer ringBuffer;
+
+    private long appended;
+    private long replayed;
+
+    /**
+     * @param capacity bytes for records, a power of two; each quote takes 64
+     */
+    public SpillFile(final File file, final int capacity) {
+        checkCapacity(capacity);
+        final long length = capacity + RingBufferDescriptor.TRAILER_LENGTH;
+        this.file = file;
+        this.mappedBuffer = file.length() == length
+                ? IoUtil.mapExistingFile(file, "spill")
+                : IoUtil.mapNewFile(file, length);
+        this.ringBuffer = new OneToOneRingBuffer(new UnsafeBuffer(mappedBuffer));
+        LOGGER.info("Spill file {} capacity={} bytes, {} bytes left from the last run", file, capacity, ringBuffer.size());
+    }
+
+    /**
+     * Checks a capacity before anything is mapped, as {@link OneToOneRingBuffer} would only after.
+     */
+    public static int checkCapacity(final long capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || !BitUtil.isPowerOfTwo(capacity)) {
+            throw new IllegalArgumentException(
+                    "Spill capacity must be a power of two up to " + MAX_CAPACITY + " bytes: " + capacity);
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Appends the codec's record; false when the file is full.
+     */
+    public boolean append(final MarketTickCodec codec) {
+        if (!ringBuffer.write(QUOTE_MSG_TYPE_ID, codec.buffer(), 0, MarketTickCodec.ENCODED_LENGTH)) {
+            return false;
+        }
+        appended++;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return ringBuffer.size() == 0;
+    }
+
+    /**
+     * Hands up to {@code limit} records to the handler, oldest first, each one a {@link MarketTickCodec} record.
+     */
+    public int replay(final MessageHandler handler, final int limit) {
+        final int read = ringBuffer.read(handler, limit);
+        replayed += read;
+        return read;
+    }
+
+    /**
+     * Records appended, read on the appending thread.
+     */
+    public long appended() {
+        return appended;
+    }
+
+    /**
+     * Records replayed, read on the replaying thread.
+     */
+    public long replayed() {
+        return replayed;
+    }
+
+    @Override
+    public void close() {
+        final int left = ringBuffer.size();
+        IoUtil.unmap(mappedBuffer);
+        if (left == 0) {
+            IoUtil.deleteIfExists(file);
+        } else {
+            LOGGER.warn("Spill file {} kept with {} bytes not replayed", file, left);
+        }
+    }
+}
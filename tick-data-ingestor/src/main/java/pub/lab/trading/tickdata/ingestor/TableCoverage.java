@@ -0,0 +1,107 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import org.agrona.collections.Long2LongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The time already present in a QuestDB table, as the first and last designated timestamp within each bucket of
+ * {@code bucketMicros}. A timestamp between the two is taken as already ingested, so a backfill only writes the gaps:
+ * whole buckets with no rows and the uncovered ends of the buckets an outage started or stopped in.
+ * <p>
+ * Loaded with one GROUP BY over QuestDB's REST {@code /exec} endpoint; a table that does not exist yet covers nothing.
+ * Assumes the ILP default of a microsecond {@code TIMESTAMP} designated column, whatever unit the rows were sent in.
+ */
+public class TableCoverage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableCoverage.class);
+
+    private static final String DATASET = "\"dataset\":[";
+
+    private final long bucketMicros;
+    private final Long2LongHashMap firstByBucket = new Long2LongHashMap(Long.MIN_VALUE);
+    private final Long2LongHashMap lastByBucket = new Long2LongHashMap(Long.MIN_VALUE);
+
+    private TableCoverage(final long bucketMicros) {
+        this.bucketMicros = bucketMicros;
+    }
+
+    /**
+     * @param httpUrl QuestDB's REST endpoint, e.g. {@code http://localhost:9000}
+     */
+    public static TableCoverage load(final HttpClient client,
+                                     final String httpUrl,
+                                     final String table,
+                                     final long fromMicros,
+                                     final long toMicros,
+                                     final long bucketMicros) throws IOException, InterruptedException {
+        final String sql = "SELECT ts / " + bucketMicros + " bucket, min(ts) first, max(ts) last"
+                + " FROM (SELECT timestamp::long ts FROM " + table
+                + " WHERE timestamp >= " + fromMicros + " AND timestamp < " + toMicros + ")"
+                + " GROUP BY bucket";
+        final HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(httpUrl + "/exec?query=" + URLEncoder.encode(sql, StandardCharsets.UTF_8))).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        final TableCoverage coverage = new TableCoverage(bucketMicros);
+        final String body = response.body();
+        if (response.statusCode() != 200) {
+            if (body.contains("does not exist")) {
+                LOGGER.info("Table {} does not exist yet, nothing to skip", table);
+                return coverage;
+            }
+            throw new IOException("Coverage query on " + table + " failed, HTTP " + response.statusCode() + ": " + body);
+        }
+        coverage.parseDataset(body);
+        LOGGER.info("Table {} has rows in {} of the {} us buckets between {} and {}",
+                table, coverage.firstByBucket.size(), bucketMicros, fromMicros, toMicros);
+        return coverage;
+    }
+
+    /**
+     * Rows of {@code [bucket, first, last]}, all longs.
+     */
+    private void parseDataset(final String body) {
+        final int start = body.indexOf(DATASET);
+        if (start < 0) {
+            throw new IllegalArgumentException("No dataset in response: " + body);
+        }
+        final long[] row = new long[3];
+        int column = 0;
+        int i = start + DATASET.length();
+        while (i < body.length()) {
+            final char c = body.charAt(i);
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                int end = i + 1;
+                while (end < body.length() && Character.isDigit(body.charAt(end))) {
+                    end++;
+                }
+                row[column++] = Long.parseLong(body, i, end, 10);
+                i = end;
+                continue;
+            }
+            if (c == ']') {
+                if (column == 0) { // end of the dataset
+                    return;
+                }
+                firstByBucket.put(row[0], row[1]);
+                lastByBucket.put(row[0], row[2]);
+                column = 0;
+            }
+            i++;
+        }
+    }
+
+    public boolean covers(final long timestampMicros) {
+        final long bucket = timestampMicros / bucketMicros;
+        final long first = firstByBucket.get(bucket);
+        return first != Long.MIN_VALUE && timestampMicros >= first && timestampMicros <= lastByBucket.get(bucket);
+    }
+}
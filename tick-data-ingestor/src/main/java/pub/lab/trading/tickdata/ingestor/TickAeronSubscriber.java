@@ -1,6 +1,5 @@
 package pub.lab.trading.tickdata.ingestor;
 
-import io.aeron.Aeron;
 import io.aeron.Subscription;
 import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
@@ -11,25 +10,27 @@ import org.slf4j.LoggerFactory;
 import play.lab.model.sbe.CurrencyPair;
 import play.lab.model.sbe.MessageHeaderDecoder;
 import play.lab.model.sbe.QuoteMessageDecoder;
-import pub.lab.trading.common.config.AeronConfigs;
-import pub.lab.trading.common.config.StreamId;
 import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.model.pricing.QuoteView;
 
+/**
+ * Writes every rung of each QuoteMessage on one quote stream to that stream's table.
+ */
 public class TickAeronSubscriber implements FragmentHandler, Worker, AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TickAeronSubscriber.class);
 
     private final QuestDBWriter writer;
+    private final IngestStream stream;
     private final QuoteView quoteView = new QuoteView();
-    private final Aeron aeron;
     private final Subscription sub;
 
-    public TickAeronSubscriber(QuestDBWriter writer) {
-        this.aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
-        this.sub = aeron.addSubscription(
-                AeronConfigs.LIVE_CHANNEL,
-                StreamId.DATA_RAW_QUOTE.getCode());
+    /**
+     * @param sub closed with the subscriber, null when fragments are pushed in directly
+     */
+    public TickAeronSubscriber(QuestDBWriter writer, IngestStream stream, Subscription sub) {
         this.writer = writer;
+        this.stream = stream;
+        this.sub = sub;
     }
 
     @Override
@@ -47,7 +48,8 @@ public class TickAeronSubscriber implements FragmentHandler, Worker, AutoCloseab
         while (rungDecoder.hasNext()) {
             QuoteMessageDecoder.RungDecoder nextRung = rungDecoder.next();
             writer.writeQuote(
-                    currencyPair.name(),
+                    stream,
+                    currencyPair,
                     timestamp,
                     tenor,
                     valueDate,
@@ -62,27 +64,23 @@ public class TickAeronSubscriber implements FragmentHandler, Worker, AutoCloseab
 
     @Override
     public int doWork() throws Exception {
-        // Poll Aeron for new fragments
-        int fragmentsRead = sub.poll(this, 10);
-
-        // If we processed data, flush to QuestDB based on your latency requirements
-        if (fragmentsRead > 0) {
-            writer.flush();
-        }
-
-        return fragmentsRead;
+        // Poll Aeron for new fragments, the writer batches and flushes them
+        return sub.poll(this, 10);
     }
 
     @Override
     public String roleName() {
-        return "TickDataOIngestionAeronSubscriber";
+        return "TickDataOIngestionAeronSubscriber-" + stream;
+    }
+
+    @Override
+    public void onClose() {
+        close();
     }
 
     @Override
     public void close() {
-        LOGGER.info("Closing TickDataOIngestionAeronSubscriber...");
+        LOGGER.info("Closing {}...", roleName());
         CloseHelper.close(sub);
-        CloseHelper.close(aeron);
     }
 }
-
@@ -0,0 +1,87 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import io.aeron.Aeron;
+import io.aeron.archive.client.AeronArchive;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.net.http.HttpClient;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the gaps the ingestor left in QuestDB from the Aeron Archive recordings of the same streams, then exits.
+ * Runs stream by stream, skipping whatever each table already has around a message's timestamp (see
+ * {@link TableCoverage}), so running it twice over the same window writes nothing the second time.
+ * <pre>
+ * -Dbackfill.from=2025-01-06T08:00:00Z       window start, required
+ * -Dbackfill.to=2025-01-06T09:30:00Z         window end, exclusive, default now
+ * -Dbackfill.bucketMillis=1000               coverage granularity
+ * -Dbackfill.recordedChannel=aeron:ipc       channel the streams were recorded on
+ * -Dbackfill.questdb.http=http://localhost:9000
+ * -Dingestor.streams, -Dingestor.questdb.config as for the live ingestor
+ * </pre>
+ */
+public class TickBackfillLauncher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TickBackfillLauncher.class);
+
+    public static void main(String[] args) throws Exception {
+        String from = System.getProperty("backfill.from");
+        if (from == null) {
+            throw new IllegalArgumentException("-Dbackfill.from=<ISO-8601 instant> is required");
+        }
+        long fromMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.parse(from));
+        long toMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.parse(System.getProperty("backfill.to", Instant.now().toString())));
+        long bucketMicros = TimeUnit.MILLISECONDS.toMicros(Long.getLong("backfill.bucketMillis", 1_000L));
+        String recordedChannel = System.getProperty("backfill.recordedChannel", AeronConfigs.LIVE_CHANNEL);
+        String questDbHttp = System.getProperty("backfill.questdb.http", "http://localhost:9000");
+        // bigger batches than live, latency does not matter here
+        String questDbConfig = System.getProperty("ingestor.questdb.config", "tcp::addr=localhost:9009;init_buf_size=16777216;");
+        int maxBatchRows = Integer.getInteger("ingestor.batch.rows", 100_000);
+        String[] streams = System.getProperty("ingestor.streams", IngestStream.RAW_QUOTE.name()).split(",");
+        LOGGER.info("Backfill Starting Up, window {} -> {}", fromMicros, toMicros);
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        QuestDBWriter writer = new QuestDBWriter(questDbConfig, new CachedClock(), maxBatchRows, Long.MAX_VALUE,
+                QuestDBWriter.DEFAULT_QUEUE_CAPACITY, null, null, QuestDBWriter.DEFAULT_RECONNECT_INTERVAL_NANOS);
+        try (
+                writer;
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                AeronArchive archive = AeronArchive.connect(
+                        new AeronArchive.Context()
+                                .aeron(aeron)
+                                .controlRequestChannel(AeronConfigs.CONTROL_REQUEST_CHANNEL)
+                                .controlResponseChannel(AeronConfigs.CONTROL_RESPONSE_CHANNEL))
+        ) {
+            for (String name : streams) {
+                final IngestStream stream = IngestStream.valueOf(name.trim());
+                final ArchiveBackfill backfill = new ArchiveBackfill(
+                        stream,
+                        writer,
+                        TableCoverage.load(httpClient, questDbHttp, stream.getTable(), fromMicros, toMicros, bucketMicros),
+                        fromMicros,
+                        toMicros,
+                        new BackoffIdleStrategy());
+                backfill.run(aeron, archive, recordedChannel, AeronConfigs.REPLAY_TICK_BACKFILL_CHANNEL);
+                writer.flush();
+                LOGGER.info("{} into {}: replayed={} written={} alreadyCovered={} outsideWindow={}",
+                        stream,
+                        stream.getTable(),
+                        backfill.replayedMessages(),
+                        backfill.writtenMessages(),
+                        backfill.coveredMessages(),
+                        backfill.outsideWindowMessages());
+            }
+        }
+        if (writer.lostRows() > 0 || writer.droppedQuotes() > 0) {
+            // what did get written is covered now, so a rerun only fills the rest
+            LOGGER.error("Backfill incomplete, {} rows not written, run it again once QuestDB is reachable",
+                    writer.lostRows() + writer.droppedQuotes());
+        }
+        LOGGER.info("Backfill Stopped");
+    }
+}
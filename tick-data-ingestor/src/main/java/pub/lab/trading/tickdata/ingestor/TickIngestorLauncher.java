@@ -1,41 +1,90 @@
 package pub.lab.trading.tickdata.ingestor;
 
+import io.aeron.Aeron;
+import io.aeron.Subscription;
 import org.agrona.concurrent.AgentRunner;
 import org.agrona.concurrent.BackoffIdleStrategy;
 import org.agrona.concurrent.ShutdownSignalBarrier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pub.lab.trading.common.config.AeronConfigs;
 import pub.lab.trading.common.lifecycle.AgentAffinityLocker;
 import pub.lab.trading.common.lifecycle.MultiStreamPoller;
 import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 public class TickIngestorLauncher {
     private static final Logger LOGGER = LoggerFactory.getLogger(TickIngestorLauncher.class);
 
     public static void main(String[] args) {
-        String questDbConfig = "tcp::addr=localhost:9009;";
+        // the ILP buffer holds a full batch, otherwise the sender flushes on its own every 64KB
+        String questDbConfig = System.getProperty("ingestor.questdb.config", "tcp::addr=localhost:9009;init_buf_size=4194304;");
+        int maxBatchRows = Integer.getInteger("ingestor.batch.rows", QuestDBWriter.DEFAULT_MAX_BATCH_ROWS);
+        long maxBatchDelayNanos = TimeUnit.MICROSECONDS.toNanos(
+                Long.getLong("ingestor.batch.micros", TimeUnit.NANOSECONDS.toMicros(QuestDBWriter.DEFAULT_MAX_BATCH_DELAY_NANOS)));
+        int queueCapacity = Integer.getInteger("ingestor.queue.capacity", QuestDBWriter.DEFAULT_QUEUE_CAPACITY);
+        String spillFile = System.getProperty("ingestor.spill.file");
+        int spillCapacity = SpillFile.checkCapacity(Long.getLong("ingestor.spill.capacityMb", 256L) * 1024 * 1024);
+        // rows wait here while QuestDB is unreachable and replay in order once it is back
+        String outageFile = System.getProperty("ingestor.outage.file");
+        int outageCapacity = SpillFile.checkCapacity(Long.getLong("ingestor.outage.capacityMb", 1024L) * 1024 * 1024);
+        long reconnectIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.getLong("ingestor.reconnectMillis", TimeUnit.NANOSECONDS.toMillis(QuestDBWriter.DEFAULT_RECONNECT_INTERVAL_NANOS)));
+        int cpuId = Integer.getInteger("ingestor.cpu", -1);
+        // IngestStream names, each into its own table
+        String[] streams = System.getProperty("ingestor.streams", IngestStream.RAW_QUOTE.name()).split(",");
         LOGGER.info("Application Starting Up");
         try (
-                QuestDBWriter writer = new QuestDBWriter(questDbConfig);
-                TickAeronSubscriber subscriber = new TickAeronSubscriber(writer);
-                AgentRunner agentRunner = new AgentRunner(new BackoffIdleStrategy(),
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                QuestDBWriter writer = new QuestDBWriter(questDbConfig, new CachedClock(), maxBatchRows, maxBatchDelayNanos, queueCapacity,
+                        spillFile == null ? null : new SpillFile(new File(spillFile), spillCapacity),
+                        outageFile == null ? null : new SpillFile(new File(outageFile), outageCapacity),
+                        reconnectIntervalNanos);
+                // a slow flush stalls only the writer, the Aeron thread overflows or spills instead of waiting
+                AgentRunner writerRunner = new AgentRunner(new BackoffIdleStrategy(),
                         Throwable::printStackTrace,
                         null,
                         new MultiStreamPoller(
-                                "tick-ingestion-poller",
+                                "tick-ingestion-writer",
                                 new Worker[]{
-                                        subscriber,
                                         writer
                                 }
                         ));
+                AgentRunner subscriberRunner = new AgentRunner(new BackoffIdleStrategy(),
+                        Throwable::printStackTrace,
+                        null,
+                        // one thread for every stream, the writer's queues take a single producer
+                        new MultiStreamPoller(
+                                "tick-ingestion-poller",
+                                subscribe(aeron, writer, streams)
+                        ));
                 var barrier = new ShutdownSignalBarrier()
         ) {
-            AgentAffinityLocker.pin(agentRunner);
-            LOGGER.info("Started {}", agentRunner.agent());
+            AgentRunner.startOnThread(writerRunner);
+            new Thread(() -> AgentAffinityLocker.pin(subscriberRunner, cpuId), subscriberRunner.agent().roleName()).start();
+            LOGGER.info("Started {} and {} streams={} maxBatchRows={} maxBatchDelayNanos={} queueCapacity={} spillFile={} outageFile={}",
+                    subscriberRunner.agent(), writerRunner.agent(), String.join(",", streams), maxBatchRows, maxBatchDelayNanos,
+                    queueCapacity, spillFile, outageFile);
             barrier.await();
-            LOGGER.info("Shutting down {}", agentRunner.agent());
+            LOGGER.info("Shutting down {} and {}", subscriberRunner.agent(), writerRunner.agent());
         }
 
         LOGGER.info("Application Stopped");
     }
+
+    private static Worker[] subscribe(Aeron aeron, QuestDBWriter writer, String[] streamNames) {
+        final Worker[] subscribers = new Worker[streamNames.length];
+        for (int i = 0; i < streamNames.length; i++) {
+            final IngestStream stream = IngestStream.valueOf(streamNames[i].trim());
+            final Subscription sub = aeron.addSubscription(AeronConfigs.LIVE_CHANNEL, stream.getStreamId());
+            subscribers[i] = stream == IngestStream.GOLDEN_TICK
+                    ? new GoldenTickAeronSubscriber(writer, sub)
+                    : new TickAeronSubscriber(writer, stream, sub);
+            LOGGER.info("Recording stream {} into {}", stream.getStreamId(), stream.getTable());
+        }
+        return subscribers;
+    }
 }
@@ -0,0 +1,117 @@
+package pub.lab.trading.tickdata.ingestor;
+
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import play.lab.model.sbe.CurrencyPair;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.QuoteMessageEncoder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation on the ingestor path, from a QuoteMessage fragment through the writer queue to the ILP buffer and the
+ * socket, against a local sink that discards the bytes. Run with the GC profiler and check
+ * {@code gc.alloc.rate.norm} is 0 B/op:
+ * <pre>
+ * mvn -pl tick-data-ingestor test-compile exec:java -Dexec.mainClass=pub.lab.trading.tickdata.ingestor.TickIngestAllocationBenchmark -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-exports", "java.base/jdk.internal.misc=ALL-UNNAMED"})
+public class TickIngestAllocationBenchmark {
+    private static final int RUNGS = 5;
+
+    private ServerSocketChannel sinkChannel;
+    private Thread sinkThread;
+    private QuestDBWriter writer;
+    private TickAeronSubscriber subscriber;
+
+    private final UnsafeBuffer fragment = new UnsafeBuffer(ByteBuffer.allocateDirect(512));
+    private int fragmentLength;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sinkChannel = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        sinkThread = new Thread(this::drain, "ilp-sink");
+        sinkThread.setDaemon(true);
+        sinkThread.start();
+
+        writer = new QuestDBWriter("tcp::addr=localhost:" + sinkChannel.socket().getLocalPort() + ";");
+        subscriber = new TickAeronSubscriber(writer, IngestStream.RAW_QUOTE, null);
+
+        QuoteMessageEncoder encoder = new QuoteMessageEncoder();
+        QuoteMessageEncoder.RungEncoder rungs = encoder.wrapAndApplyHeader(fragment, 0, new MessageHeaderEncoder())
+                .symbol(CurrencyPair.EURUSD)
+                .priceCreationTimestamp(1_700_000_000_000_000L)
+                .tenor(0)
+                .valueDate(20_251_231L)
+                .clientTier(1)
+                .rungCount(RUNGS);
+        for (int i = 0; i < RUNGS; i++) {
+            rungs.next().bid(1.1000 - i * 0.0001).ask(1.1002 + i * 0.0001).volume(1_000_000.0 * (i + 1));
+        }
+        fragmentLength = MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.close();
+        CloseHelper.quietClose(sinkChannel);
+    }
+
+    private void drain() {
+        ByteBuffer discard = ByteBuffer.allocateDirect(64 * 1024);
+        try (SocketChannel channel = sinkChannel.accept()) {
+            while (channel.read(discard) >= 0) {
+                discard.clear();
+            }
+        } catch (IOException ignored) {
+            // sink closed
+        }
+    }
+
+    @Benchmark
+    public int fragmentToIlp() {
+        subscriber.onFragment(fragment, 0, fragmentLength, null);
+        int written = 0;
+        int work;
+        while ((work = writer.doWork()) > 0) {
+            written += work;
+        }
+        writer.flush();
+        return written;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TickIngestAllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -1,79 +1,399 @@
 package pub.lab.trading.ticketplant;
 
 import io.aeron.Publication;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.SystemEpochNanoClock;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import play.lab.model.sbe.GoldenTickEncoder;
+import play.lab.model.sbe.MarketState;
 import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.VenueHeartbeatDecoder;
 import play.lab.model.sbe.VenueID;
 import play.lab.model.sbe.VenueTickDecoder;
 import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.util.CachedClock;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class Aggregator implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Aggregator.class);
+    private static final long EXPIRY_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int NOT_PUBLISHABLE = 0;
+    private static final int UNCHANGED = 1;
+    private static final int PUBLISHED = 2;
+    private static final int OFFER_FAILED = 3;
+    // publishedVenues before the first Golden BBO, 0 is not a venue
+    private static final int NEVER_PUBLISHED = 0;
+
     private final int INITIAL_BUFFER_CAPACITY = 512;
-    private final long[][] venueStates = new long[8][4];
+    private final VenueBook venueBook;
     private final GoldenTickEncoder encoder = new GoldenTickEncoder();
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
     private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(INITIAL_BUFFER_CAPACITY));
     private final Publication publication;
     private final CachedClock clock;
+    private final EpochNanoClock epochClock;
+    // last BBO that made it onto the publication, per security
+    private final long[] publishedBids = new long[VenueBook.DEFAULT_MAX_SECURITIES];
+    private final long[] publishedAsks = new long[VenueBook.DEFAULT_MAX_SECURITIES];
+    // packed marketState << 16 | bidVenue << 8 | askVenue
+    private final int[] publishedVenues = new int[VenueBook.DEFAULT_MAX_SECURITIES];
+    // last uncrossed venue BBO, per security, for WIDEN_TO_LAST_UNCROSSED
+    private final long[] lastUncrossedBids = new long[VenueBook.DEFAULT_MAX_SECURITIES];
+    private final long[] lastUncrossedAsks = new long[VenueBook.DEFAULT_MAX_SECURITIES];
+    private final int[] lastUncrossedVenues = new int[VenueBook.DEFAULT_MAX_SECURITIES];
+    private final long[] crossedTicksByVenue = new long[VenueBook.MAX_VENUES];
+    private final long[] lockedTicksByVenue = new long[VenueBook.MAX_VENUES];
+    private final CrossedMarketPolicy crossedMarketPolicy;
+    // securities whose Golden BBO offer failed and is still owed
+    private final boolean[] pending = new boolean[VenueBook.DEFAULT_MAX_SECURITIES];
+    private final int[] pendingSecurities = new int[VenueBook.DEFAULT_MAX_SECURITIES];
+    private int pendingCount;
+    private IntConsumer expiryListener = securityId -> {
+    };
+    private long nextExpiryCheckNanos;
+    private long heartbeats;
+    private long staleExpiries;
+    private long silentVenueEvents;
+    private long globalSeqNum;
+    private long rejectedTicks;
+    private long unchangedTicks;
+    private long offerFailures;
 
     public Aggregator(final Publication publication, final CachedClock clock) {
+        this(publication, clock, new SystemEpochNanoClock(), Long.MAX_VALUE, Long.MAX_VALUE, CrossedMarketPolicy.EXCLUDE_VENUE);
+    }
+
+    /**
+     * @param clock        venue staleness and silence
+     * @param epochClock   tpTimestamp on the GoldenTicks
+     * @param staleNanos   age after which a venue quote no longer counts towards the Golden BBO
+     * @param silenceNanos time without a tick or heartbeat after which a venue is dropped from the Golden BBO
+     */
+    public Aggregator(final Publication publication,
+                      final CachedClock clock,
+                      final EpochNanoClock epochClock,
+                      final long staleNanos,
+                      final long silenceNanos,
+                      final CrossedMarketPolicy crossedMarketPolicy) {
         this.publication = publication;
         this.clock = clock;
+        this.epochClock = epochClock;
+        this.crossedMarketPolicy = crossedMarketPolicy;
+        this.venueBook = new VenueBook(VenueBook.DEFAULT_MAX_SECURITIES, staleNanos, silenceNanos);
+    }
+
+    /**
+     * Told the securityId of every book whose BBO changed because a venue went stale or silent.
+     */
+    public void onExpiry(final IntConsumer expiryListener) {
+        this.expiryListener = expiryListener;
     }
 
     public void onVenueTick(VenueTickDecoder tick) {
-        int vId = tick.venueId().value();
-
-        // 1. Update Internal VOB State
-        venueStates[vId][0] = tick.bidPrice();
-        venueStates[vId][1] = tick.bidSize();
-        venueStates[vId][2] = tick.askPrice();
-        venueStates[vId][3] = tick.askSize();
-
-        // 2. Calculate Global Best (Golden BBO)
-        long bestBid = 0;
-        long bestAsk = Long.MAX_VALUE;
-        short bestBidVenue = 0, bestAskVenue = 0;
-
-        for (short i = 0; i < venueStates.length; i++) {
-            if (venueStates[i][0] > bestBid) { // Find Max Bid
-                bestBid = venueStates[i][0];
-                bestBidVenue = i;
+        long securityId = tick.securityId();
+        int vId = tick.venueIdRaw();
+        if (!venueBook.accepts(securityId, vId)) {
+            rejectedTicks++;
+            return;
+        }
+        int secId = (int) securityId;
+        long now = clock.nanoTime();
+
+        // 1. Update Internal VOB State, the book keeps the Golden BBO current incrementally
+        venueBook.heartbeat(vId, now);
+        venueBook.update(secId, vId, tick.bidPrice(), tick.bidSize(), tick.askPrice(), tick.askSize(), now);
+
+        // 2. Count the venue that locked or crossed the book
+        countCross(secId);
+
+        // 3. Publish the Golden BBO if it changed, owing it to doWork when the offer is back-pressured
+        int result = publishIfChanged(secId, now);
+        if (result == UNCHANGED) {
+            unchangedTicks++;
+        } else if (result == OFFER_FAILED) {
+            owe(secId);
+        }
+    }
+
+    /**
+     * Keeps a quiet venue live between ticks.
+     */
+    public void onVenueHeartbeat(VenueHeartbeatDecoder heartbeat) {
+        int vId = heartbeat.venueIdRaw();
+        if (VenueBook.isDefined(vId)) {
+            venueBook.heartbeat(vId, clock.nanoTime());
+            heartbeats++;
+        }
+    }
+
+    /**
+     * Called on a venueSeqNum gap, before the tick that revealed it: the venue's quotes so far are suspect and leave
+     * the Golden BBO until the venue updates them.
+     */
+    public void onVenueGap(int venueId) {
+        if (VenueBook.isDefined(venueId)) {
+            long now = clock.nanoTime();
+            venueBook.suspect(venueId, now);
+            expireSecurities(now);
+        }
+    }
+
+    private void owe(int secId) {
+        if (!pending[secId]) {
+            pending[secId] = true;
+            pendingSecurities[pendingCount++] = secId;
+        }
+    }
+
+    private int publishIfChanged(int secId, long now) {
+        short bestBidVenue = venueBook.bestBidVenue(secId);
+        short bestAskVenue = venueBook.bestAskVenue(secId);
+        if (bestBidVenue == VenueBook.NO_VENUE || bestAskVenue == VenueBook.NO_VENUE) {
+            return publishOneSided(secId, bestBidVenue, bestAskVenue);
+        }
+        long bestBid = venueBook.bestBid(secId);
+        long bestAsk = venueBook.bestAsk(secId);
+        MarketState state = marketState(bestBid, bestAsk);
+
+        // Crossed Market Protection
+        switch (state) {
+            case NORMAL -> {
+                lastUncrossedBids[secId] = bestBid;
+                lastUncrossedAsks[secId] = bestAsk;
+                lastUncrossedVenues[secId] = (bestBidVenue << 8) | bestAskVenue;
             }
-            if (venueStates[i][2] > 0 && venueStates[i][2] < bestAsk) { // Find Min Ask
-                bestAsk = venueStates[i][2];
-                bestAskVenue = i;
+            case LOCKED, CROSSED -> {
+                switch (crossedMarketPolicy) {
+                    case EXCLUDE_VENUE -> {
+                        int excludedVenues = 0;
+                        while (bestBid >= bestAsk) {
+                            excludedVenues |= 1 << newerQuote(secId, bestBidVenue, bestAskVenue);
+                            bestBidVenue = venueBook.bestBidVenueExcluding(secId, excludedVenues, now);
+                            bestAskVenue = venueBook.bestAskVenueExcluding(secId, excludedVenues, now);
+                            if (bestBidVenue == VenueBook.NO_VENUE || bestAskVenue == VenueBook.NO_VENUE) {
+                                return publishOneSided(secId, bestBidVenue, bestAskVenue);
+                            }
+                            bestBid = venueBook.bidPrice(secId, bestBidVenue);
+                            bestAsk = venueBook.askPrice(secId, bestAskVenue);
+                        }
+                    }
+                    case WIDEN_TO_LAST_UNCROSSED -> {
+                        if (lastUncrossedBids[secId] == 0) {
+                            return NOT_PUBLISHABLE; // never seen uncrossed
+                        }
+                        if (lastUncrossedBids[secId] < bestBid) {
+                            bestBid = lastUncrossedBids[secId];
+                            bestBidVenue = (short) (lastUncrossedVenues[secId] >> 8);
+                        }
+                        if (lastUncrossedAsks[secId] > bestAsk) {
+                            bestAsk = lastUncrossedAsks[secId];
+                            bestAskVenue = (short) (lastUncrossedVenues[secId] & 0xFF);
+                        }
+                    }
+                    case PUBLISH_FLAGGED -> {
+                        // as is, marketState tells
+                    }
+                }
             }
         }
 
-        // 3. Arbitrage Check (Crossed Market Protection)
-        if (bestBid >= bestAsk) {
-            // LOGIC: Market is crossed! Potentially ignore or widen.
+        return publishIfChanged(secId, bestBid, bestAsk, bestBidVenue, bestAskVenue, state);
+    }
+
+    /**
+     * A side left without a venue, by staleness, silence or the crossed market policy, goes out once at price 0 with
+     * no venue, so the last Golden price on it does not stay live. Nothing goes out for a security never published.
+     */
+    private int publishOneSided(int secId, short bidVenue, short askVenue) {
+        if (publishedVenues[secId] == NEVER_PUBLISHED) {
+            return NOT_PUBLISHABLE;
+        }
+        long bid = bidVenue == VenueBook.NO_VENUE ? 0 : venueBook.bidPrice(secId, bidVenue);
+        long ask = askVenue == VenueBook.NO_VENUE ? 0 : venueBook.askPrice(secId, askVenue);
+        MarketState state = bidVenue == VenueBook.NO_VENUE && askVenue == VenueBook.NO_VENUE
+                ? MarketState.NO_QUOTE
+                : MarketState.ONE_SIDED;
+        return publishIfChanged(secId, bid, ask, bidVenue, askVenue, state);
+    }
+
+    private int publishIfChanged(int secId, long bid, long ask, short bidVenue, short askVenue, MarketState state) {
+        int venues = (state.value() << 16) | (bidVenue << 8) | askVenue;
+        if (bid == publishedBids[secId] && ask == publishedAsks[secId] && venues == publishedVenues[secId]) {
+            return UNCHANGED;
+        }
+        if (!publishGoldenTick(secId, bid, ask, bidVenue, askVenue, state)) {
+            return OFFER_FAILED;
+        }
+        publishedBids[secId] = bid;
+        publishedAsks[secId] = ask;
+        publishedVenues[secId] = venues;
+        return PUBLISHED;
+    }
+
+    private static MarketState marketState(long bestBid, long bestAsk) {
+        return bestBid < bestAsk ? MarketState.NORMAL : bestBid == bestAsk ? MarketState.LOCKED : MarketState.CROSSED;
+    }
+
+    // the venue whose quote made the book cross: the more recent of the two
+    private int newerQuote(int secId, short bidVenue, short askVenue) {
+        return venueBook.updateNanos(secId, bidVenue) >= venueBook.updateNanos(secId, askVenue) ? bidVenue : askVenue;
+    }
+
+    private void countCross(int secId) {
+        short bestBidVenue = venueBook.bestBidVenue(secId);
+        short bestAskVenue = venueBook.bestAskVenue(secId);
+        if (bestBidVenue == VenueBook.NO_VENUE || bestAskVenue == VenueBook.NO_VENUE) {
             return;
         }
+        long bestBid = venueBook.bestBid(secId);
+        long bestAsk = venueBook.bestAsk(secId);
+        if (bestBid > bestAsk) {
+            crossedTicksByVenue[newerQuote(secId, bestBidVenue, bestAskVenue)]++;
+        } else if (bestBid == bestAsk) {
+            lockedTicksByVenue[newerQuote(secId, bestBidVenue, bestAskVenue)]++;
+        }
+    }
 
-        // 4. Publish to Aeron if the BBO has changed
-        publishGoldenTick(tick.securityId(), bestBid, bestAsk, bestBidVenue, bestAskVenue);
+    /**
+     * Applies a journaled tick to the venue book without publishing, used to rebuild state before going live.
+     * The first live tick per security then publishes the recovered BBO. Restored quotes and their venue's last
+     * heard time keep the age they had in the journal, so a quote already past the staleness or silence timeout is
+     * dropped as soon as the aggregator runs.
+     *
+     * @param journalTimestampNanos when the tick was journaled, epoch nanos
+     */
+    public boolean restore(VenueTickDecoder tick, long journalTimestampNanos) {
+        long securityId = tick.securityId();
+        int vId = tick.venueIdRaw();
+        if (!venueBook.accepts(securityId, vId)) {
+            return false;
+        }
+        // the journal age carried over onto the clock staleness is measured on
+        long age = Math.max(0, epochClock.nanoTime() - journalTimestampNanos);
+        long restoredNanos = clock.nanoTime() - age;
+        venueBook.heartbeat(vId, restoredNanos);
+        venueBook.update((int) securityId, vId, tick.bidPrice(), tick.bidSize(), tick.askPrice(), tick.askSize(), restoredNanos);
+        return true;
     }
 
-    private void publishGoldenTick(long secId, long bid, long ask, short bV, short aV) {
-        encoder.wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder())
+    public VenueBook venueBook() {
+        return venueBook;
+    }
+
+    public long rejectedTicks() {
+        return rejectedTicks;
+    }
+
+    /**
+     * globalSeqNum only advances when the offer succeeds, so a consumer seeing a gap knows it missed a message.
+     * A failed offer leaves the last published BBO untouched and {@link #doWork()} retries.
+     */
+    private boolean publishGoldenTick(long secId, long bid, long ask, short bV, short aV, MarketState state) {
+        encoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                .globalSeqNum(globalSeqNum + 1)
                 .securityId(secId)
                 .bestBidPrice(bid)
                 .bestAskPrice(ask)
                 .bestBidVenue(VenueID.get(bV))
                 .bestAskVenue(VenueID.get(aV))
-                .tpTimestamp(clock.nanoTime());
+                .tpTimestamp(epochClock.nanoTime())
+                .marketState(state);
+
+        if (publication.offer(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength()) < 0) {
+            offerFailures++;
+            return false;
+        }
+        globalSeqNum++;
+        return true;
+    }
+
+    public long globalSeqNum() {
+        return globalSeqNum;
+    }
+
+    public long unchangedTicks() {
+        return unchangedTicks;
+    }
+
+    public long offerFailures() {
+        return offerFailures;
+    }
+
+    public long crossedTicks(int venueId) {
+        return crossedTicksByVenue[venueId];
+    }
+
+    public long lockedTicks(int venueId) {
+        return lockedTicksByVenue[venueId];
+    }
+
+    public long heartbeats() {
+        return heartbeats;
+    }
 
-        publication.offer(buffer, 0, encoder.encodedLength());
+    public long staleExpiries() {
+        return staleExpiries;
     }
 
+    public long silentVenueEvents() {
+        return silentVenueEvents;
+    }
+
+    /**
+     * Drops stale quotes and silent venues from the Golden BBO on a fixed interval, then retries the Golden BBOs
+     * whose offer was back-pressured, so a security that goes quiet right after a failed offer still converges to
+     * its current BBO instead of waiting for its next tick.
+     */
     @Override
     public int doWork() {
-        return 0;
+        int workCount = 0;
+        long now = clock.nanoTime();
+        if (now >= nextExpiryCheckNanos) {
+            nextExpiryCheckNanos = now + EXPIRY_CHECK_INTERVAL_NANOS;
+            workCount += expire(now);
+        }
+        int i = 0;
+        while (i < pendingCount) {
+            int secId = pendingSecurities[i];
+            if (publishIfChanged(secId, now) == OFFER_FAILED) {
+                return workCount; // still back-pressured, next duty cycle
+            }
+            pending[secId] = false;
+            pendingSecurities[i] = pendingSecurities[--pendingCount];
+            workCount++;
+        }
+        return workCount;
+    }
+
+    private int expire(long now) {
+        int newlySilent = venueBook.expireVenues(now);
+        for (int v = 0; newlySilent != 0 && v < VenueBook.MAX_VENUES; v++) {
+            if ((newlySilent & (1 << v)) != 0) {
+                silentVenueEvents++;
+                LOGGER.warn("Venue {} silent, dropping its quotes from the Golden BBO", v);
+            }
+        }
+        return expireSecurities(now);
+    }
+
+    private int expireSecurities(long now) {
+        int expired = 0;
+        for (int secId = 0; secId < venueBook.maxSecurities(); secId++) {
+            if (venueBook.expire(secId, now)) {
+                staleExpiries++;
+                expired++;
+                if (publishIfChanged(secId, now) == OFFER_FAILED) {
+                    owe(secId);
+                }
+                expiryListener.accept(secId);
+            }
+        }
+        return expired;
     }
 
     @Override
@@ -0,0 +1,21 @@
+package pub.lab.trading.ticketplant;
+
+/**
+ * What the {@link Aggregator} publishes when the best bid across venues is at or through the best ask. Whatever the
+ * policy, the GoldenTick's {@code marketState} reports LOCKED or CROSSED so consumers know the venue book was not
+ * clean.
+ */
+public enum CrossedMarketPolicy {
+    /**
+     * Leave out the venue with the most recent of the two crossing quotes, repeatedly, until the book uncrosses.
+     */
+    EXCLUDE_VENUE,
+    /**
+     * Publish the crossed best prices as they are.
+     */
+    PUBLISH_FLAGGED,
+    /**
+     * Publish the wider of the current and the last uncrossed price on each side, which cannot cross.
+     */
+    WIDEN_TO_LAST_UNCROSSED
+}
@@ -0,0 +1,20 @@
+package pub.lab.trading.ticketplant;
+
+/**
+ * When journal pages are forced to disk. Every policy other than {@link #NONE} runs on the {@link JournalFlusher}
+ * thread, never on the ticker plant duty cycle.
+ */
+public enum FlushPolicy {
+    /**
+     * Leave write-back to the OS; survives a process crash, not a host crash.
+     */
+    NONE,
+    /**
+     * Force whatever was written since the last flush on a fixed interval.
+     */
+    PERIODIC,
+    /**
+     * Force once N messages are pending or the oldest pending message is older than the commit window.
+     */
+    GROUP_COMMIT
+}
@@ -0,0 +1,210 @@
+package pub.lab.trading.ticketplant;
+
+import org.agrona.IoUtil;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pub.lab.trading.common.lifecycle.Worker;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static pub.lab.trading.ticketplant.Journaler.END_OF_SEGMENT;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_HEADER_LENGTH;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_LENGTH_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_TIMESTAMP_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.SEGMENT_HEADER_LENGTH;
+
+/**
+ * Forces journal pages to disk off the writer's thread. The flusher maps the live segment itself and follows the
+ * committed frame lengths, so the writer never hands it positions and can unmap a retired segment whenever it likes;
+ * only the dirty range since the last force is synced. A segment that has ended is synced to its last frame and
+ * unmapped before the flusher moves on.
+ * <p>
+ * Counters are written by the flusher thread only and may be read from any thread.
+ */
+public class JournalFlusher implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalFlusher.class);
+
+    private final Path directory;
+    private final FlushPolicy policy;
+    private final long flushIntervalNanos;
+    private final int groupCommitMessages;
+    private final EpochNanoClock clock;
+    private final UnsafeBuffer segment = new UnsafeBuffer(0, 0);
+
+    private MappedByteBuffer mappedSegment;
+    private long segmentIndex;
+    private int scannedPosition;
+    private int flushedPosition;
+    private int pendingMessages;
+    private long oldestPendingNanos;
+    private long nextFlushNanos;
+
+    private volatile long flushes;
+    private volatile long bytesFlushed;
+    private volatile long bytesOutstanding;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long totalFlushNanos;
+
+    /**
+     * @param flushIntervalNanos PERIODIC: time between flushes; GROUP_COMMIT: longest a message waits for a flush
+     * @param groupCommitMessages GROUP_COMMIT: pending messages that trigger a flush
+     */
+    public JournalFlusher(final Path directory,
+                          final long startSegmentIndex,
+                          final FlushPolicy policy,
+                          final long flushIntervalNanos,
+                          final int groupCommitMessages,
+                          final EpochNanoClock clock) {
+        if (policy == FlushPolicy.NONE) {
+            throw new IllegalArgumentException("No flusher is needed for " + policy);
+        }
+        this.directory = directory;
+        this.segmentIndex = startSegmentIndex;
+        this.policy = policy;
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.groupCommitMessages = groupCommitMessages;
+        this.clock = clock;
+    }
+
+    @Override
+    public int doWork() {
+        if (mappedSegment == null && !openSegment()) {
+            return 0;
+        }
+        boolean segmentEnded = scan();
+        bytesOutstanding = scannedPosition - flushedPosition;
+        long now = clock.nanoTime();
+        int workCount = 0;
+        if (scannedPosition > flushedPosition && (segmentEnded || flushDue(now))) {
+            flush(now);
+            workCount++;
+        }
+        if (segmentEnded) {
+            retireSegment();
+            segmentIndex++;
+            workCount++;
+        }
+        return workCount;
+    }
+
+    /**
+     * Follows committed frames from the last scan and returns true once the segment has no more to come.
+     */
+    private boolean scan() {
+        while (scannedPosition + FRAME_HEADER_LENGTH <= segment.capacity()) {
+            int length = segment.getIntVolatile(scannedPosition + FRAME_LENGTH_OFFSET);
+            if (length == END_OF_SEGMENT) {
+                return true;
+            }
+            if (length == 0) {
+                if (!Files.exists(Journaler.segmentFile(directory, segmentIndex + 1))) {
+                    return false;
+                }
+                // the writer may have appended and rolled since the length was read
+                if (segment.getIntVolatile(scannedPosition + FRAME_LENGTH_OFFSET) != 0) {
+                    continue;
+                }
+                // an unwritten tail with a later segment present was left by a restart
+                return true;
+            }
+            if (pendingMessages++ == 0) {
+                oldestPendingNanos = segment.getLong(scannedPosition + FRAME_TIMESTAMP_OFFSET);
+            }
+            scannedPosition += Journaler.frameLength(length);
+        }
+        return true;
+    }
+
+    private boolean flushDue(long now) {
+        return switch (policy) {
+            case PERIODIC -> now >= nextFlushNanos;
+            case GROUP_COMMIT -> pendingMessages >= groupCommitMessages || now - oldestPendingNanos >= flushIntervalNanos;
+            case NONE -> false;
+        };
+    }
+
+    private void flush(long now) {
+        int length = scannedPosition - flushedPosition;
+        long start = System.nanoTime();
+        mappedSegment.force(flushedPosition, length);
+        long elapsed = System.nanoTime() - start;
+        flushedPosition = scannedPosition;
+        pendingMessages = 0;
+        nextFlushNanos = now + flushIntervalNanos;
+
+        bytesOutstanding = 0;
+        bytesFlushed += length;
+        lastFlushNanos = elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        totalFlushNanos += elapsed;
+        flushes++;
+    }
+
+    private boolean openSegment() {
+        Path file = Journaler.segmentFile(directory, segmentIndex);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        mappedSegment = IoUtil.mapExistingFile(file.toFile(), "journal segment");
+        segment.wrap(mappedSegment);
+        scannedPosition = SEGMENT_HEADER_LENGTH;
+        flushedPosition = 0; // header included in the first force
+        pendingMessages = 0;
+        return true;
+    }
+
+    private void retireSegment() {
+        segment.wrap(0, 0);
+        IoUtil.unmap(mappedSegment);
+        mappedSegment = null;
+    }
+
+    @Override
+    public void onClose() {
+        if (mappedSegment != null) {
+            scan();
+            if (scannedPosition > flushedPosition) {
+                flush(clock.nanoTime());
+            }
+            retireSegment();
+        }
+        LOGGER.info("Journal flusher closed: flushes={} bytesFlushed={} maxFlushNanos={}", flushes, bytesFlushed, maxFlushNanos);
+    }
+
+    public long flushes() {
+        return flushes;
+    }
+
+    public long bytesFlushed() {
+        return bytesFlushed;
+    }
+
+    /**
+     * Bytes known to be written but not yet forced, as of the flusher's last pass.
+     */
+    public long bytesOutstanding() {
+        return bytesOutstanding;
+    }
+
+    public long lastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    public long maxFlushNanos() {
+        return maxFlushNanos;
+    }
+
+    public long totalFlushNanos() {
+        return totalFlushNanos;
+    }
+
+    @Override
+    public String roleName() {
+        return "TickPlant-JournalFlusher";
+    }
+}
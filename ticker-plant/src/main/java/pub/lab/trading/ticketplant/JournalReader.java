@@ -0,0 +1,214 @@
+package pub.lab.trading.ticketplant;
+
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static pub.lab.trading.ticketplant.Journaler.END_OF_SEGMENT;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_CHECKSUM_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_HEADER_LENGTH;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_LENGTH_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_SEQUENCE_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_TEMPLATE_ID_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.FRAME_TIMESTAMP_OFFSET;
+import static pub.lab.trading.ticketplant.Journaler.SEGMENT_HEADER_LENGTH;
+import static pub.lab.trading.ticketplant.Journaler.SEGMENT_MAGIC;
+
+/**
+ * Sequential reader over the segments written by {@link Journaler}, oldest first. Maps one segment at a time and
+ * hands each frame's payload to a {@link FrameHandler} straight out of the mapping.
+ * <p>
+ * Safe to run against a live journal: a zero length is the unwritten tail and {@link #poll} returns until the writer
+ * gets further. A frame whose checksum does not match, a torn write from a crash, ends its segment; the reader
+ * counts it and carries on with the next segment.
+ */
+public class JournalReader implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalReader.class);
+
+    @FunctionalInterface
+    public interface FrameHandler {
+        void onFrame(long sequence, long timestampNanos, int templateId, DirectBuffer buffer, int offset, int length);
+    }
+
+    private final Path directory;
+    private final UnsafeBuffer segment = new UnsafeBuffer(0, 0);
+    private final CRC32C checksum = new CRC32C();
+
+    private MappedByteBuffer mappedSegment;
+    private long segmentIndex = -1;
+    private int segmentPosition;
+    private long tornFrames;
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+        long first = Journaler.firstSegmentIndex(directory);
+        if (first >= 0) {
+            openSegment(first);
+        }
+    }
+
+    /**
+     * Delivers up to {@code frameLimit} frames and returns how many were delivered.
+     */
+    public int poll(FrameHandler handler, int frameLimit) {
+        int frames = 0;
+        while (frames < frameLimit) {
+            if (mappedSegment == null && !openSegment(Math.max(0, segmentIndex + 1))) {
+                break;
+            }
+            int frame = segmentPosition;
+            int length = frame + FRAME_HEADER_LENGTH <= segment.capacity() ? segment.getIntVolatile(frame + FRAME_LENGTH_OFFSET) : END_OF_SEGMENT;
+            if (length == 0 || length == END_OF_SEGMENT) {
+                if (length == 0 && Files.exists(Journaler.segmentFile(directory, segmentIndex + 1))
+                        && segment.getIntVolatile(frame + FRAME_LENGTH_OFFSET) != 0) {
+                    continue; // the writer appended and rolled since the length was read
+                }
+                if (!nextSegment(length == END_OF_SEGMENT)) {
+                    break;
+                }
+                continue;
+            }
+            if (length < 0 || length > segment.capacity() - frame - FRAME_HEADER_LENGTH
+                    || segment.getInt(frame + FRAME_CHECKSUM_OFFSET) != Journaler.checksum(mappedSegment, checksum, frame, length)) {
+                tornFrames++;
+                LOGGER.warn("Torn journal frame in segment {} at offset {}, skipping the rest of the segment", segmentIndex, frame);
+                if (!nextSegment(true)) {
+                    break;
+                }
+                continue;
+            }
+            handler.onFrame(
+                    segment.getLong(frame + FRAME_SEQUENCE_OFFSET),
+                    segment.getLong(frame + FRAME_TIMESTAMP_OFFSET),
+                    segment.getInt(frame + FRAME_TEMPLATE_ID_OFFSET),
+                    segment,
+                    frame + FRAME_HEADER_LENGTH,
+                    length);
+            segmentPosition += Journaler.frameLength(length);
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Positions the reader on the first frame with a sequence at or after {@code sequence}, in the last segment that
+     * starts at or before it. Returns false when the journal has nothing at or after it yet; the reader is then on
+     * the newest segment and {@link #poll} delivers whatever arrives next.
+     */
+    public boolean seekToSequence(long sequence) {
+        return seek(Journaler.FIRST_SEQUENCE_OFFSET, FRAME_SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * As {@link #seekToSequence} for the first frame journaled at or after {@code timestampNanos}, epoch nanos.
+     */
+    public boolean seekToTimestamp(long timestampNanos) {
+        return seek(Journaler.START_TIMESTAMP_OFFSET, FRAME_TIMESTAMP_OFFSET, timestampNanos);
+    }
+
+    private boolean seek(int segmentHeaderOffset, int frameOffset, long target) {
+        long first = Journaler.firstSegmentIndex(directory);
+        long last = Journaler.lastSegmentIndex(directory);
+        if (last < 0) {
+            return false;
+        }
+        long index = last;
+        while (index > first && !(openSegment(index) && segment.getLong(segmentHeaderOffset) <= target)) {
+            index--;
+        }
+        if (segmentIndex != index && !openSegment(index)) {
+            return false;
+        }
+        while (true) {
+            int frame = segmentPosition;
+            int length = frame + FRAME_HEADER_LENGTH <= segment.capacity() ? segment.getIntVolatile(frame + FRAME_LENGTH_OFFSET) : END_OF_SEGMENT;
+            if (length <= 0 || length > segment.capacity() - frame - FRAME_HEADER_LENGTH) {
+                if (segmentIndex < last && openSegment(segmentIndex + 1)) {
+                    continue;
+                }
+                return false;
+            }
+            if (segment.getLong(frame + frameOffset) >= target) {
+                return true;
+            }
+            segmentPosition += Journaler.frameLength(length);
+        }
+    }
+
+    /**
+     * Moves to the following segment if it exists. An unwritten tail is only left behind when a later segment
+     * exists, which means the writer restarted or rolled; otherwise the reader waits on it.
+     */
+    private boolean nextSegment(boolean segmentEnded) {
+        Path next = Journaler.segmentFile(directory, segmentIndex + 1);
+        if (!Files.exists(next)) {
+            if (segmentEnded) {
+                closeSegment();
+            }
+            return false;
+        }
+        return openSegment(segmentIndex + 1);
+    }
+
+    private boolean openSegment(long index) {
+        Path file = Journaler.segmentFile(directory, index);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        closeSegment();
+        mappedSegment = IoUtil.mapExistingFile(file.toFile(), "journal segment");
+        segment.wrap(mappedSegment);
+        if (segment.getInt(Journaler.MAGIC_OFFSET) != SEGMENT_MAGIC) {
+            throw new IllegalStateException("Not a journal segment: " + file);
+        }
+        segmentIndex = index;
+        segmentPosition = SEGMENT_HEADER_LENGTH;
+        return true;
+    }
+
+    private void closeSegment() {
+        if (mappedSegment != null) {
+            segment.wrap(0, 0);
+            IoUtil.unmap(mappedSegment);
+            mappedSegment = null;
+        }
+    }
+
+    public long segmentIndex() {
+        return segmentIndex;
+    }
+
+    public long tornFrames() {
+        return tornFrames;
+    }
+
+    @Override
+    public void close() {
+        closeSegment();
+    }
+
+    /**
+     * Sequence of the last intact frame in segment {@code segmentIndex}, or the segment's first sequence minus one
+     * when it holds none. Used by the writer to carry on numbering after a restart.
+     */
+    static long lastSequence(Path directory, long segmentIndex) {
+        try (JournalReader reader = new JournalReader(directory)) {
+            if (!reader.openSegment(segmentIndex)) {
+                return 0;
+            }
+            long[] last = {reader.segment.getLong(Journaler.FIRST_SEQUENCE_OFFSET) - 1};
+            while (reader.segmentIndex == segmentIndex && reader.mappedSegment != null
+                    && reader.poll((sequence, timestampNanos, templateId, buffer, offset, length) -> last[0] = sequence, 1024) > 0) {
+                // keep scanning
+            }
+            return last[0];
+        }
+    }
+}
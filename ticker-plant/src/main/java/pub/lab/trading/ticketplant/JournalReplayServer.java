@@ -0,0 +1,111 @@
+package pub.lab.trading.ticketplant;
+
+import io.aeron.Aeron;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.EpochNanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.BooleanEnum;
+import play.lab.model.sbe.JournalReplayRequestDecoder;
+import play.lab.model.sbe.MessageHeaderDecoder;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.lifecycle.Worker;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves {@code JournalReplayRequest}s from CONTROL_JOURNAL_REPLAY. Each request becomes a {@link ReplaySession}
+ * with its own journal mapping and exclusive publication, so sessions progress independently and none of them
+ * touches the live writer. Sessions share this agent's thread and get a bounded number of records per duty cycle.
+ */
+public class JournalReplayServer implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalReplayServer.class);
+    public static final int DEFAULT_MAX_SESSIONS = 8;
+
+    private final Aeron aeron;
+    private final Subscription controlSubscription;
+    private final Path journalDir;
+    private final EpochNanoClock clock;
+    private final int maxSessions;
+    private final List<ReplaySession> sessions = new ArrayList<>();
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final JournalReplayRequestDecoder requestDecoder = new JournalReplayRequestDecoder();
+    private final FragmentHandler fragmentHandler = (buf, offset, len, hdr) -> onRequest(buf, offset);
+
+    public JournalReplayServer(final Aeron aeron, final Path journalDir, final EpochNanoClock clock, final int maxSessions) {
+        this.aeron = aeron;
+        this.journalDir = journalDir;
+        this.clock = clock;
+        this.maxSessions = maxSessions;
+        this.controlSubscription = aeron.addSubscription(AeronConfigs.LIVE_CHANNEL, StreamId.CONTROL_JOURNAL_REPLAY.getCode());
+    }
+
+    @Override
+    public int doWork() {
+        int workCount = controlSubscription.poll(fragmentHandler, 10);
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            ReplaySession session = sessions.get(i);
+            workCount += session.doWork();
+            if (session.isDone()) {
+                LOGGER.info("Replay {} finished, {} records", session.correlationId(), session.replayedRecords());
+                sessions.remove(i);
+            }
+        }
+        return workCount;
+    }
+
+    private void onRequest(DirectBuffer buf, int offset) {
+        headerDecoder.wrap(buf, offset);
+        if (headerDecoder.templateId() != JournalReplayRequestDecoder.TEMPLATE_ID) {
+            return;
+        }
+        requestDecoder.wrapAndApplyHeader(buf, offset, headerDecoder);
+        LOGGER.info("Received JournalReplayRequest :: {}", requestDecoder);
+
+        switch (requestDecoder.action()) {
+            case START -> startSession();
+            case STOP -> {
+                for (ReplaySession session : sessions) {
+                    if (session.correlationId() == requestDecoder.correlationId()) {
+                        session.stop();
+                    }
+                }
+            }
+            default -> LOGGER.warn("Unsupported replay action {}", requestDecoder.action());
+        }
+    }
+
+    private void startSession() {
+        if (sessions.size() >= maxSessions) {
+            LOGGER.warn("Replay {} rejected, {} sessions already running", requestDecoder.correlationId(), sessions.size());
+            return;
+        }
+        int streamId = requestDecoder.replayStreamId() != 0 ? requestDecoder.replayStreamId() : StreamId.DATA_JOURNAL_REPLAY.getCode();
+        sessions.add(new ReplaySession(
+                requestDecoder.correlationId(),
+                requestDecoder.fromSequence(),
+                requestDecoder.fromTimestamp(),
+                requestDecoder.speed(),
+                requestDecoder.follow() == BooleanEnum.True,
+                aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, streamId),
+                journalDir,
+                clock));
+    }
+
+    @Override
+    public void onClose() {
+        sessions.forEach(ReplaySession::stop);
+        sessions.clear();
+        controlSubscription.close();
+    }
+
+    @Override
+    public String roleName() {
+        return "TickPlant-JournalReplay";
+    }
+}
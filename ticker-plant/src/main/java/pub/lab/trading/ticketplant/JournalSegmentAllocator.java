@@ -0,0 +1,205 @@
+package pub.lab.trading.ticketplant;
+
+import org.agrona.IoUtil;
+import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pub.lab.trading.common.lifecycle.Worker;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the {@link Journaler}'s next segment ready off the writer's thread, so a roll only swaps mappings.
+ * <p>
+ * The next segment is created zero-filled under a {@code .prealloc} name, mapped and pre-touched page by page, then
+ * offered to the writer, which writes its header and renames it into place. Retired segments come back through a
+ * queue to be unmapped here. A roll that finds nothing ready for its index maps a sparse segment inline under an
+ * {@code .inline} name, as a writer without an allocator always does, and publishes it the same way.
+ * <p>
+ * One writer thread and one allocator thread.
+ */
+public class JournalSegmentAllocator implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalSegmentAllocator.class);
+
+    private static final String PREALLOC_SUFFIX = ".prealloc";
+    private static final String INLINE_SUFFIX = ".inline";
+    private static final int PAGE_SIZE = 4 * 1024;
+    private static final int RETIRED_CAPACITY = 16;
+    private static final long NO_SEGMENT = -1;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final AtomicReference<Segment> ready = new AtomicReference<>();
+    private final OneToOneConcurrentArrayQueue<MappedByteBuffer> retired = new OneToOneConcurrentArrayQueue<>(RETIRED_CAPACITY);
+
+    // written by the writer
+    private volatile long requestedIndex = NO_SEGMENT;
+
+    // allocator thread only
+    private long preparedIndex = NO_SEGMENT;
+
+    private volatile long preallocations;
+    private volatile long unmaps;
+
+    /**
+     * A mapped segment still under its {@code .prealloc} or {@code .inline} name.
+     */
+    static final class Segment {
+        final long index;
+        final Path file;
+        final MappedByteBuffer buffer;
+
+        Segment(final long index, final Path file, final MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    public JournalSegmentAllocator(final Path directory, final long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Writer side: asks for {@code segmentIndex} to be made ready for the next roll.
+     */
+    public void request(final long segmentIndex) {
+        requestedIndex = segmentIndex;
+    }
+
+    /**
+     * Writer side: the segment prepared for {@code segmentIndex}, or null when it is not ready yet.
+     */
+    Segment take(final long segmentIndex) {
+        Segment segment = ready.get();
+        if (segment != null && segment.index == segmentIndex && ready.compareAndSet(segment, null)) {
+            return segment;
+        }
+        return null;
+    }
+
+    /**
+     * Writer side: hands a retired mapping over to be unmapped, or unmaps it inline if the queue is full.
+     */
+    public void retire(final MappedByteBuffer buffer) {
+        if (!retired.offer(buffer)) {
+            IoUtil.unmap(buffer);
+        }
+    }
+
+    @Override
+    public int doWork() {
+        int workCount = 0;
+        MappedByteBuffer buffer;
+        while ((buffer = retired.poll()) != null) {
+            IoUtil.unmap(buffer);
+            unmaps++;
+            workCount++;
+        }
+        long requested = requestedIndex;
+        if (requested == NO_SEGMENT || requested == preparedIndex) {
+            return workCount;
+        }
+        Segment stale = ready.get();
+        if (stale != null) {
+            // the writer rolled past it with an inline allocation
+            if (!ready.compareAndSet(stale, null)) {
+                return workCount;
+            }
+            discard(stale);
+        }
+        LOGGER.info("Journal rolled to segment {}, preparing segment {}", requested - 1, requested);
+        ready.set(allocate(requested));
+        preparedIndex = requested;
+        preallocations++;
+        return workCount + 1;
+    }
+
+    private Segment allocate(final long segmentIndex) {
+        Path file = preallocFile(directory, segmentIndex);
+        deleteLeftover(file);
+        MappedByteBuffer buffer = IoUtil.mapNewFile(file.toFile(), segmentSize, true);
+        // fault the pages into this mapping now rather than on the writer's first touch
+        for (long page = 0; page < segmentSize; page += PAGE_SIZE) {
+            buffer.put((int) page, (byte) 0);
+        }
+        return new Segment(segmentIndex, file, buffer);
+    }
+
+    /**
+     * Writer side, when nothing was prepared: maps {@code segmentIndex} without zero-filling it, under a name the
+     * allocator never touches, to be published once its header is written.
+     */
+    static Segment allocateInline(final Path directory, final long segmentIndex, final long segmentSize) {
+        Path file = directory.resolve(Journaler.segmentFile(directory, segmentIndex).getFileName() + INLINE_SUFFIX);
+        deleteLeftover(file);
+        return new Segment(segmentIndex, file, IoUtil.mapNewFile(file.toFile(), segmentSize, false));
+    }
+
+    private static void deleteLeftover(final Path file) {
+        try {
+            Files.deleteIfExists(file); // left by a restart
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete " + file, e);
+        }
+    }
+
+    private static void discard(final Segment segment) {
+        IoUtil.unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete {}", segment.file, e);
+        }
+    }
+
+    /**
+     * Renames a taken or inline segment to its journal name, after the writer has written its header. One rename in
+     * the journal directory, on the writer's thread once per roll.
+     */
+    static void publish(final Path directory, final Segment segment) {
+        Path file = Journaler.segmentFile(directory, segment.index);
+        try {
+            Files.move(segment.file, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to publish journal segment " + file, e);
+        }
+    }
+
+    public static Path preallocFile(final Path directory, final long segmentIndex) {
+        return directory.resolve(Journaler.segmentFile(directory, segmentIndex).getFileName() + PREALLOC_SUFFIX);
+    }
+
+    @Override
+    public void onClose() {
+        MappedByteBuffer buffer;
+        while ((buffer = retired.poll()) != null) {
+            IoUtil.unmap(buffer);
+            unmaps++;
+        }
+        Segment unused = ready.getAndSet(null);
+        if (unused != null) {
+            discard(unused);
+        }
+        LOGGER.info("Journal segment allocator closed: preallocations={} unmaps={}", preallocations, unmaps);
+    }
+
+    public long preallocations() {
+        return preallocations;
+    }
+
+    public long unmaps() {
+        return unmaps;
+    }
+
+    @Override
+    public String roleName() {
+        return "TickPlant-JournalSegmentAllocator";
+    }
+}
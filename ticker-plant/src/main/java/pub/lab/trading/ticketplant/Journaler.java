@@ -1,64 +1,276 @@
 package pub.lab.trading.ticketplant;
 
+import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
 
+/**
+ * Append-only journal split into fixed-size memory-mapped segment files, {@code journal-<index>.dat}.
+ * <p>
+ * A segment is mapped at its full length before it is written and starts with a {@link #SEGMENT_HEADER_LENGTH}
+ * byte header recording its index, the sequence of its first message and its start time. The writer rolls to the
+ * next segment when a message does not fit or the segment is older than the roll interval. With a
+ * {@link JournalSegmentAllocator} the next segment is already created and mapped on the allocator's thread, and the
+ * retired one is unmapped there, so a roll only swaps mappings; without one the writer does both inline, mapping the
+ * segment sparse rather than zero-filling it. Either way a segment takes its journal name only once its header is
+ * written, and only one segment is mapped by the writer however long the session runs.
+ * <p>
+ * Every message is framed with a {@link #FRAME_HEADER_LENGTH} byte header and padded to 8 bytes:
+ * <pre>
+ *   0  int   payload length, written last with release semantics; 0 = not written yet, -1 = end of segment
+ *   4  int   CRC32C of bytes 8 .. end of payload
+ *   8  long  sequence
+ *  16  long  ingress timestamp, epoch nanos
+ *  24  int   SBE templateId of the payload
+ *  28  int   reserved
+ *  32        payload
+ * </pre>
+ * A reader that sees a non-zero length sees a complete frame; after a crash the checksum catches a frame whose
+ * pages did not all reach disk. See {@link JournalReader}.
+ * <p>
+ * Single writer: positions are plain longs owned by the ticker plant duty cycle.
+ */
 public class Journaler {
-    private static final long DEFAULT_MAP_SIZE = 1024L * 1024L * 1024L; // 1GB, adjustable
+    private static final Logger LOGGER = LoggerFactory.getLogger(Journaler.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024L * 1024L;
+    public static final long DEFAULT_ROLL_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    public static final int SEGMENT_MAGIC = 0x4A524E4C; // "JRNL"
+    public static final int SEGMENT_VERSION = 1;
+    public static final int SEGMENT_HEADER_LENGTH = 64;
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int SEGMENT_INDEX_OFFSET = 8;
+    public static final int FIRST_SEQUENCE_OFFSET = 16;
+    public static final int START_TIMESTAMP_OFFSET = 24;
+    public static final int SEGMENT_LENGTH_OFFSET = 32;
+
+    public static final int FRAME_ALIGNMENT = 8;
+    public static final int FRAME_HEADER_LENGTH = 32;
+    public static final int FRAME_LENGTH_OFFSET = 0;
+    public static final int FRAME_CHECKSUM_OFFSET = 4;
+    public static final int FRAME_SEQUENCE_OFFSET = 8;
+    public static final int FRAME_TIMESTAMP_OFFSET = 16;
+    public static final int FRAME_TEMPLATE_ID_OFFSET = 24;
+    public static final int END_OF_SEGMENT = -1;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long rollIntervalNanos;
+    private final EpochNanoClock clock;
+    private final JournalSegmentAllocator allocator;
+    private final UnsafeBuffer segment = new UnsafeBuffer(0, 0);
+    private final CRC32C checksum = new CRC32C();
 
-    private final MappedByteBuffer mappedBuffer;
-    private final AtomicLong position = new AtomicLong(0);
-    private final Path path;
+    private MappedByteBuffer mappedSegment;
+    private long segmentIndex = -1;
+    private long segmentStartNanos;
+    private int segmentPosition;
+    private long nextSequence = 1;
+    private long bytesWritten;
+    private long inlineAllocations;
 
-    public Journaler(String logFilePath) {
-        this(logFilePath, DEFAULT_MAP_SIZE);
+    public Journaler(String journalDir) {
+        this(journalDir, DEFAULT_SEGMENT_SIZE, DEFAULT_ROLL_INTERVAL_NANOS, new SystemEpochNanoClock());
     }
 
-    public Journaler(String logFilePath, long mapSize) {
-        path = Paths.get(logFilePath);
+    public Journaler(String journalDir, long segmentSize, long rollIntervalNanos, EpochNanoClock clock) {
+        this(journalDir, segmentSize, rollIntervalNanos, clock, null);
+    }
+
+    /**
+     * @param allocator prepares segments off this thread, run on another agent; null to allocate them inline
+     */
+    public Journaler(String journalDir, long segmentSize, long rollIntervalNanos, EpochNanoClock clock, JournalSegmentAllocator allocator) {
+        if (segmentSize <= SEGMENT_HEADER_LENGTH || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.directory = Paths.get(journalDir);
+        this.segmentSize = segmentSize;
+        this.rollIntervalNanos = rollIntervalNanos;
+        this.clock = clock;
+        this.allocator = allocator;
         try {
-            if (!Files.exists(path)) {
-                Files.createFile(path);
-            }
-            try (RandomAccessFile raf = new RandomAccessFile(logFilePath, "rw")) {
-                raf.seek(mapSize - 1);
-                raf.writeByte(0); // Pre-allocate by writing to end
-                mappedBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
-            }
+            Files.createDirectories(directory);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to map journal file: " + logFilePath, e);
+            throw new RuntimeException("Failed to create journal directory: " + journalDir, e);
+        }
+        long lastIndex = lastSegmentIndex(directory);
+        if (lastIndex >= 0) {
+            nextSequence = JournalReader.lastSequence(directory, lastIndex) + 1;
         }
+        roll(lastIndex + 1, clock.nanoTime());
     }
 
-    public void write(DirectBuffer buffer, int offset, int length) {
-        long pos = position.getAndAdd(length);
-        if (pos + length > mappedBuffer.capacity()) {
-            throw new RuntimeException("Journal capacity exceeded. Consider larger map or rollover.");
+    public static int frameLength(int payloadLength) {
+        return BitUtil.align(FRAME_HEADER_LENGTH + payloadLength, FRAME_ALIGNMENT);
+    }
+
+    /**
+     * Appends one message, stamped with the current time, and returns the journal sequence assigned to it.
+     */
+    public long write(DirectBuffer buffer, int offset, int length, int templateId) {
+        int frameLength = frameLength(length);
+        if (frameLength > segmentSize - SEGMENT_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Message larger than a journal segment: " + length);
+        }
+        long nowNanos = clock.nanoTime();
+        if (segmentPosition + frameLength > segmentSize
+                || (rollIntervalNanos > 0 && nowNanos - segmentStartNanos >= rollIntervalNanos)) {
+            roll(segmentIndex + 1, nowNanos);
+        }
+        int frame = segmentPosition;
+        long sequence = nextSequence++;
+        segment.putLong(frame + FRAME_SEQUENCE_OFFSET, sequence);
+        segment.putLong(frame + FRAME_TIMESTAMP_OFFSET, nowNanos);
+        segment.putInt(frame + FRAME_TEMPLATE_ID_OFFSET, templateId);
+        segment.putBytes(frame + FRAME_HEADER_LENGTH, buffer, offset, length);
+        segment.putInt(frame + FRAME_CHECKSUM_OFFSET, checksum(mappedSegment, checksum, frame, length));
+        segment.putIntOrdered(frame + FRAME_LENGTH_OFFSET, length);
+        segmentPosition += frameLength;
+        bytesWritten += frameLength;
+        return sequence;
+    }
+
+    /**
+     * CRC32C over a frame from the sequence field to the end of its payload.
+     */
+    static int checksum(ByteBuffer segmentBuffer, CRC32C crc, int frame, int payloadLength) {
+        crc.reset();
+        segmentBuffer.limit(frame + FRAME_HEADER_LENGTH + payloadLength).position(frame + FRAME_SEQUENCE_OFFSET);
+        crc.update(segmentBuffer);
+        segmentBuffer.clear();
+        return (int) crc.getValue();
+    }
+
+    private void roll(long newIndex, long nowNanos) {
+        retireSegment(allocator != null);
+        JournalSegmentAllocator.Segment next = allocator != null ? allocator.take(newIndex) : null;
+        if (next == null) {
+            inlineAllocations++;
+            next = JournalSegmentAllocator.allocateInline(directory, newIndex, segmentSize);
+        }
+        mappedSegment = next.buffer;
+        segment.wrap(mappedSegment);
+        segment.putInt(MAGIC_OFFSET, SEGMENT_MAGIC);
+        segment.putInt(VERSION_OFFSET, SEGMENT_VERSION);
+        segment.putLong(SEGMENT_INDEX_OFFSET, newIndex);
+        segment.putLong(FIRST_SEQUENCE_OFFSET, nextSequence);
+        segment.putLong(START_TIMESTAMP_OFFSET, nowNanos);
+        segment.putLong(SEGMENT_LENGTH_OFFSET, segmentSize);
+        // under its journal name only once the header is in, for readers and the flusher
+        JournalSegmentAllocator.publish(directory, next);
+        segmentIndex = newIndex;
+        segmentStartNanos = nowNanos;
+        segmentPosition = SEGMENT_HEADER_LENGTH;
+        if (allocator != null) {
+            allocator.request(newIndex + 1);
+        } else {
+            LOGGER.info("Journal rolled to segment {} at sequence {}", newIndex, nextSequence);
+        }
+    }
+
+    private void retireSegment(boolean handOff) {
+        if (mappedSegment != null) {
+            if (segmentPosition + BitUtil.SIZE_OF_INT <= segmentSize) {
+                segment.putIntOrdered(segmentPosition + FRAME_LENGTH_OFFSET, END_OF_SEGMENT);
+            }
+            segment.wrap(0, 0);
+            if (handOff) {
+                allocator.retire(mappedSegment);
+            } else {
+                IoUtil.unmap(mappedSegment);
+            }
+            mappedSegment = null;
         }
-        buffer.getBytes(offset, mappedBuffer, (int) pos, length);
     }
 
     public void force() {
-        mappedBuffer.force(); // Flush to disk
+        if (mappedSegment != null) {
+            mappedSegment.force(); // Flush to disk
+        }
     }
 
     public void close() {
-        // MappedByteBuffer doesn't have close, but force changes and let GC unmap
         force();
-        try {
-            // Trim file to actual size if needed
-            try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
-                raf.setLength(position.get());
+        retireSegment(false); // the allocator's agent may already be closed
+    }
+
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    public long segmentIndex() {
+        return segmentIndex;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Rolls that found no prepared segment and created one on the writer's thread, the first segment included.
+     */
+    public long inlineAllocations() {
+        return inlineAllocations;
+    }
+
+    public static Path segmentFile(Path directory, long segmentIndex) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Lowest segment index present in {@code directory}, or -1 when there is none.
+     */
+    public static long firstSegmentIndex(Path directory) {
+        long first = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segmentPath : segments) {
+                long index = segmentIndex(segmentPath);
+                first = first < 0 ? index : Math.min(first, index);
             }
         } catch (IOException e) {
-            // Log error
+            throw new RuntimeException("Failed to list journal segments in " + directory, e);
         }
+        return first;
+    }
+
+    /**
+     * Highest segment index present in {@code directory}, or -1 when there is none.
+     */
+    public static long lastSegmentIndex(Path directory) {
+        long last = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segmentPath : segments) {
+                last = Math.max(last, segmentIndex(segmentPath));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list journal segments in " + directory, e);
+        }
+        return last;
+    }
+
+    private static long segmentIndex(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
     }
-}
\ No newline at end of file
+}
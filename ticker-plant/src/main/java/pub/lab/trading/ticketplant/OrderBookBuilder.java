@@ -0,0 +1,281 @@
+package pub.lab.trading.ticketplant;
+
+import io.aeron.Publication;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import play.lab.model.sbe.BookSide;
+import play.lab.model.sbe.LevelAction;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.OrderBookLevelUpdateEncoder;
+import play.lab.model.sbe.OrderBookSnapshotEncoder;
+import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregated depth per security, built from the venue tops held in the {@link VenueBook}: venues quoting the same
+ * price collapse into one level with their summed size and a venue count.
+ * <p>
+ * Levels live in flat primitive arrays, sorted best first per side. On every venue tick the touched security is
+ * re-merged and diffed against its previous ladder; each difference goes out as an {@code OrderBookLevelUpdate}
+ * carrying a per-security updateId. {@link #doWork()} publishes an {@code OrderBookSnapshot} of every non-empty book
+ * on a fixed interval with the last updateId it covers, so a late joiner or a consumer that saw an updateId gap
+ * takes the next snapshot and applies updates after it.
+ */
+public class OrderBookBuilder implements Worker {
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int MAX_LEVELS = VenueBook.MAX_VENUES;
+    private static final int BID = 0;
+    private static final int ASK = 1;
+    private static final int BUFFER_CAPACITY = 1024;
+
+    private final VenueBook venueBook;
+    private final Publication publication;
+    private final CachedClock clock;
+    private final EpochNanoClock epochClock;
+    private final long snapshotIntervalNanos;
+
+    // [securityId][side][level], flattened
+    private final long[] levelPrices;
+    private final long[] levelSizes;
+    private final int[] levelVenueCounts;
+    // [securityId][side]
+    private final int[] levelCounts;
+    private final long[] updateIds;
+
+    // merge target for one side of one security
+    private final long[] scratchPrices = new long[MAX_LEVELS];
+    private final long[] scratchSizes = new long[MAX_LEVELS];
+    private final int[] scratchVenueCounts = new int[MAX_LEVELS];
+    private int scratchCount;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(BUFFER_CAPACITY));
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final OrderBookLevelUpdateEncoder levelUpdateEncoder = new OrderBookLevelUpdateEncoder();
+    private final OrderBookSnapshotEncoder snapshotEncoder = new OrderBookSnapshotEncoder();
+
+    private long nextSnapshotNanos;
+    private long levelUpdates;
+    private long snapshots;
+    private long offerFailures;
+
+    public OrderBookBuilder(final VenueBook venueBook, final Publication publication, final CachedClock clock) {
+        this(venueBook, publication, clock, new SystemEpochNanoClock(), DEFAULT_SNAPSHOT_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param clock      staleness and the snapshot interval
+     * @param epochClock tpTimestamp on the level updates
+     */
+    public OrderBookBuilder(final VenueBook venueBook,
+                            final Publication publication,
+                            final CachedClock clock,
+                            final EpochNanoClock epochClock,
+                            final long snapshotIntervalNanos) {
+        this.venueBook = venueBook;
+        this.publication = publication;
+        this.clock = clock;
+        this.epochClock = epochClock;
+        this.snapshotIntervalNanos = snapshotIntervalNanos;
+        int maxSecurities = venueBook.maxSecurities();
+        this.levelPrices = new long[maxSecurities * 2 * MAX_LEVELS];
+        this.levelSizes = new long[maxSecurities * 2 * MAX_LEVELS];
+        this.levelVenueCounts = new int[maxSecurities * 2 * MAX_LEVELS];
+        this.levelCounts = new int[maxSecurities * 2];
+        this.updateIds = new long[maxSecurities];
+    }
+
+    /**
+     * Call after the venue book has taken a tick for {@code securityId}.
+     */
+    public void onBookUpdate(final int securityId) {
+        if (securityId < 0 || securityId >= venueBook.maxSecurities()) {
+            return;
+        }
+        long now = clock.nanoTime();
+        long tpTimestamp = epochClock.nanoTime();
+        mergeSide(securityId, BID, now);
+        diffAndStore(securityId, BID, tpTimestamp);
+        mergeSide(securityId, ASK, now);
+        diffAndStore(securityId, ASK, tpTimestamp);
+    }
+
+    /**
+     * Re-merges every security from the venue book without publishing deltas, after the book was restored from the
+     * journal. The next snapshot carries the rebuilt depth.
+     */
+    public void rebuildAll() {
+        long now = clock.nanoTime();
+        for (int securityId = 0; securityId < venueBook.maxSecurities(); securityId++) {
+            for (int side = BID; side <= ASK; side++) {
+                mergeSide(securityId, side, now);
+                store(securityId, side);
+            }
+        }
+        nextSnapshotNanos = 0;
+    }
+
+    // stale and silent venues are left out, as they are from the Golden BBO
+    private void mergeSide(final int securityId, final int side, final long now) {
+        scratchCount = 0;
+        for (int v = 0; v < VenueBook.MAX_VENUES; v++) {
+            long price = side == BID ? venueBook.bidPrice(securityId, v) : venueBook.askPrice(securityId, v);
+            if (price <= 0 || venueBook.isStale(securityId, v, now)) {
+                continue;
+            }
+            long size = side == BID ? venueBook.bidSize(securityId, v) : venueBook.askSize(securityId, v);
+            long rank = rank(side, price);
+            int i = 0;
+            while (i < scratchCount && rank(side, scratchPrices[i]) < rank) {
+                i++;
+            }
+            if (i < scratchCount && scratchPrices[i] == price) {
+                scratchSizes[i] += size;
+                scratchVenueCounts[i]++;
+                continue;
+            }
+            int tail = scratchCount - i;
+            System.arraycopy(scratchPrices, i, scratchPrices, i + 1, tail);
+            System.arraycopy(scratchSizes, i, scratchSizes, i + 1, tail);
+            System.arraycopy(scratchVenueCounts, i, scratchVenueCounts, i + 1, tail);
+            scratchPrices[i] = price;
+            scratchSizes[i] = size;
+            scratchVenueCounts[i] = 1;
+            scratchCount++;
+        }
+    }
+
+    /**
+     * Walks the stored and freshly merged ladders together, both best first, emitting NEW, CHANGE and DELETE
+     * for the differences, then replaces the stored ladder.
+     */
+    private void diffAndStore(final int securityId, final int side, final long tpTimestamp) {
+        int sideIndex = securityId * 2 + side;
+        int base = sideIndex * MAX_LEVELS;
+        int oldCount = levelCounts[sideIndex];
+        int o = 0;
+        int n = 0;
+        while (o < oldCount || n < scratchCount) {
+            long oldPrice = o < oldCount ? levelPrices[base + o] : 0;
+            long newPrice = n < scratchCount ? scratchPrices[n] : 0;
+            if (o < oldCount && n < scratchCount && oldPrice == newPrice) {
+                if (levelSizes[base + o] != scratchSizes[n] || levelVenueCounts[base + o] != scratchVenueCounts[n]) {
+                    publishLevelUpdate(securityId, side, LevelAction.CHANGE, newPrice, scratchSizes[n], scratchVenueCounts[n], tpTimestamp);
+                }
+                o++;
+                n++;
+            } else if (n >= scratchCount || (o < oldCount && rank(side, oldPrice) < rank(side, newPrice))) {
+                publishLevelUpdate(securityId, side, LevelAction.DELETE, oldPrice, 0, 0, tpTimestamp);
+                o++;
+            } else {
+                publishLevelUpdate(securityId, side, LevelAction.NEW, newPrice, scratchSizes[n], scratchVenueCounts[n], tpTimestamp);
+                n++;
+            }
+        }
+        store(securityId, side);
+    }
+
+    private void store(final int securityId, final int side) {
+        int sideIndex = securityId * 2 + side;
+        int base = sideIndex * MAX_LEVELS;
+        System.arraycopy(scratchPrices, 0, levelPrices, base, scratchCount);
+        System.arraycopy(scratchSizes, 0, levelSizes, base, scratchCount);
+        System.arraycopy(scratchVenueCounts, 0, levelVenueCounts, base, scratchCount);
+        levelCounts[sideIndex] = scratchCount;
+    }
+
+    // smaller rank is the better price: highest bid, lowest ask
+    private static long rank(final int side, final long price) {
+        return side == BID ? -price : price;
+    }
+
+    /**
+     * The updateId advances even when the offer fails, so consumers see the gap and resync from the next snapshot.
+     */
+    private void publishLevelUpdate(final int securityId, final int side, final LevelAction action,
+                                    final long price, final long totalSize, final int venueCount, final long tpTimestamp) {
+        levelUpdateEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                .securityId(securityId)
+                .updateId(++updateIds[securityId])
+                .side(side == BID ? BookSide.BID : BookSide.ASK)
+                .action(action)
+                .price(price)
+                .totalSize(totalSize)
+                .venueCount((short) venueCount)
+                .tpTimestamp(tpTimestamp);
+        if (publication.offer(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + levelUpdateEncoder.encodedLength()) < 0) {
+            offerFailures++;
+        } else {
+            levelUpdates++;
+        }
+    }
+
+    private int publishSnapshots() {
+        int published = 0;
+        for (int securityId = 0; securityId < updateIds.length; securityId++) {
+            if (levelCounts[securityId * 2 + BID] == 0 && levelCounts[securityId * 2 + ASK] == 0) {
+                continue;
+            }
+            snapshotEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                    .securityId(securityId)
+                    .lastUpdateId(updateIds[securityId]);
+
+            int bidBase = (securityId * 2 + BID) * MAX_LEVELS;
+            OrderBookSnapshotEncoder.BidLevelsEncoder bids = snapshotEncoder.bidLevelsCount(levelCounts[securityId * 2 + BID]);
+            for (int i = 0; i < levelCounts[securityId * 2 + BID]; i++) {
+                bids.next()
+                        .price(levelPrices[bidBase + i])
+                        .totalSize(levelSizes[bidBase + i])
+                        .venueCount((short) levelVenueCounts[bidBase + i]);
+            }
+
+            int askBase = (securityId * 2 + ASK) * MAX_LEVELS;
+            OrderBookSnapshotEncoder.AskLevelsEncoder asks = snapshotEncoder.askLevelsCount(levelCounts[securityId * 2 + ASK]);
+            for (int i = 0; i < levelCounts[securityId * 2 + ASK]; i++) {
+                asks.next()
+                        .price(levelPrices[askBase + i])
+                        .totalSize(levelSizes[askBase + i])
+                        .venueCount((short) levelVenueCounts[askBase + i]);
+            }
+
+            if (publication.offer(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + snapshotEncoder.encodedLength()) < 0) {
+                offerFailures++;
+            } else {
+                snapshots++;
+                published++;
+            }
+        }
+        return published;
+    }
+
+    @Override
+    public int doWork() {
+        long now = clock.nanoTime();
+        if (now < nextSnapshotNanos) {
+            return 0;
+        }
+        nextSnapshotNanos = now + snapshotIntervalNanos;
+        return publishSnapshots();
+    }
+
+    public long levelUpdates() {
+        return levelUpdates;
+    }
+
+    public long snapshots() {
+        return snapshots;
+    }
+
+    public long offerFailures() {
+        return offerFailures;
+    }
+
+    @Override
+    public String roleName() {
+        return "TickPlant-OrderBookBuilder";
+    }
+}
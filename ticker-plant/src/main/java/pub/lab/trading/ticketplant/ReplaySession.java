@@ -0,0 +1,207 @@
+package pub.lab.trading.ticketplant;
+
+import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
+import io.aeron.ReservedValueSupplier;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.JournalReplayStatusEncoder;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.ReplayStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One replay: journal records from a start point onto the session's own publication, then either completes or keeps
+ * following the live journal tail.
+ * <p>
+ * Records are offered straight out of the session's mapping of the segment; the journal sequence travels in the
+ * Aeron frame's reserved value, so a subscriber reads {@code header.reservedValue()} to know where it is. A
+ * {@code JournalReplayStatus} goes out when the session starts, when it has caught up with the writer
+ * (the hand-over point to live) and when it ends.
+ */
+class ReplaySession implements JournalReader.FrameHandler, ReservedValueSupplier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplaySession.class);
+    private static final long CONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int FRAMES_PER_DUTY_CYCLE = 64;
+
+    private final long correlationId;
+    private final long fromSequence;
+    private final long fromTimestamp;
+    private final double speed;
+    private final boolean follow;
+    private final ExclusivePublication publication;
+    private final JournalReader reader;
+    private final EpochNanoClock clock;
+    private final UnsafeBuffer statusBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(64));
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final JournalReplayStatusEncoder statusEncoder = new JournalReplayStatusEncoder();
+    private final long createdNanos;
+
+    // frame taken from the reader but not yet offered, valid until the next poll
+    private boolean hasPending;
+    private DirectBuffer pendingBuffer;
+    private int pendingOffset;
+    private int pendingLength;
+    private long pendingSequence;
+    private long pendingTimestamp;
+
+    private boolean started;
+    private boolean caughtUp;
+    private boolean done;
+    private long firstTimestamp = -1;
+    private long replayStartNanos;
+    private long lastSequence;
+    private long replayedRecords;
+
+    ReplaySession(final long correlationId,
+                  final long fromSequence,
+                  final long fromTimestamp,
+                  final double speed,
+                  final boolean follow,
+                  final ExclusivePublication publication,
+                  final Path journalDir,
+                  final EpochNanoClock clock) {
+        this.correlationId = correlationId;
+        this.fromSequence = fromSequence;
+        this.fromTimestamp = fromTimestamp;
+        this.speed = speed;
+        this.follow = follow;
+        this.publication = publication;
+        this.clock = clock;
+        this.createdNanos = clock.nanoTime();
+        this.reader = new JournalReader(journalDir);
+        if (fromSequence > 0) {
+            reader.seekToSequence(fromSequence);
+        } else if (fromTimestamp > 0) {
+            reader.seekToTimestamp(fromTimestamp);
+        }
+    }
+
+    int doWork() {
+        if (done) {
+            return 0;
+        }
+        long now = clock.nanoTime();
+        if (!started) {
+            if (!publication.isConnected()) {
+                if (now - createdNanos > CONNECT_TIMEOUT_NANOS) {
+                    LOGGER.warn("Replay {} timed out waiting for a subscriber on stream {}", correlationId, publication.streamId());
+                    close();
+                }
+                return 0;
+            }
+            started = sendStatus(ReplayStatus.STARTED);
+            replayStartNanos = now;
+            return started ? 1 : 0;
+        }
+
+        // frames skipped before the start point count too, so one cycle never scans a whole segment
+        int workCount = 0;
+        for (int frames = 0; frames < FRAMES_PER_DUTY_CYCLE; frames++) {
+            if (!hasPending && reader.poll(this, 1) == 0) {
+                return workCount + onCaughtUp();
+            }
+            if (!hasPending) {
+                workCount++;
+                continue; // skipped, before the start point
+            }
+            if (speed > 0 && !due(now)) {
+                return workCount;
+            }
+            long result = publication.offer(pendingBuffer, pendingOffset, pendingLength, this);
+            if (result < 0) {
+                if (result == Publication.CLOSED || result == Publication.NOT_CONNECTED) {
+                    LOGGER.info("Replay {} subscriber gone after {} records", correlationId, replayedRecords);
+                    close();
+                }
+                return workCount;
+            }
+            hasPending = false;
+            lastSequence = pendingSequence;
+            replayedRecords++;
+            workCount++;
+        }
+        return workCount;
+    }
+
+    @Override
+    public void onFrame(long sequence, long timestampNanos, int templateId, DirectBuffer buffer, int offset, int length) {
+        if (sequence < fromSequence || timestampNanos < fromTimestamp) {
+            return;
+        }
+        hasPending = true;
+        pendingBuffer = buffer;
+        pendingOffset = offset;
+        pendingLength = length;
+        pendingSequence = sequence;
+        pendingTimestamp = timestampNanos;
+    }
+
+    // journal time since the first replayed record, scaled by speed, against wall time since the replay started
+    private boolean due(long now) {
+        if (firstTimestamp < 0) {
+            firstTimestamp = pendingTimestamp;
+        }
+        return (pendingTimestamp - firstTimestamp) / speed <= now - replayStartNanos;
+    }
+
+    private int onCaughtUp() {
+        if (caughtUp) {
+            return 0;
+        }
+        if (!sendStatus(follow ? ReplayStatus.CAUGHT_UP : ReplayStatus.COMPLETED)) {
+            return 0;
+        }
+        caughtUp = true;
+        LOGGER.info("Replay {} caught up at sequence {} after {} records", correlationId, lastSequence, replayedRecords);
+        if (!follow) {
+            close();
+        }
+        return 1;
+    }
+
+    private boolean sendStatus(ReplayStatus status) {
+        statusEncoder.wrapAndApplyHeader(statusBuffer, 0, headerEncoder)
+                .correlationId(correlationId)
+                .status(status)
+                .lastSequence(lastSequence)
+                .tsNanos(clock.nanoTime());
+        return publication.offer(statusBuffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + statusEncoder.encodedLength()) > 0;
+    }
+
+    @Override
+    public long get(DirectBuffer termBuffer, int termOffset, int frameLength) {
+        return pendingSequence;
+    }
+
+    void stop() {
+        if (!done) {
+            sendStatus(ReplayStatus.COMPLETED);
+            close();
+        }
+    }
+
+    private void close() {
+        done = true;
+        reader.close();
+        publication.close();
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    long correlationId() {
+        return correlationId;
+    }
+
+    long replayedRecords() {
+        return replayedRecords;
+    }
+}
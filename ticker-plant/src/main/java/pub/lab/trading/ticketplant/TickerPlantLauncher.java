@@ -1,67 +1,335 @@
 package pub.lab.trading.ticketplant;
 
+import io.aeron.Aeron;
 import io.aeron.Publication;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.concurrent.AgentRunner;
 import org.agrona.concurrent.BackoffIdleStrategy;
-import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.agrona.concurrent.SystemEpochNanoClock;
+import org.agrona.concurrent.MessageHandler;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
 import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import play.lab.model.sbe.MessageHeaderDecoder;
+import play.lab.model.sbe.VenueHeartbeatDecoder;
 import play.lab.model.sbe.VenueTickDecoder;
+import pub.lab.trading.common.config.AeronConfigs;
+import pub.lab.trading.common.config.StreamId;
+import pub.lab.trading.common.lifecycle.AgentAffinityLocker;
+import pub.lab.trading.common.lifecycle.Worker;
 import pub.lab.trading.common.util.CachedClock;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
-public class TickerPlantLauncher {
+/**
+ * The ticker plant duty cycle as one agent: venue ticks arrive from feed handlers over Aeron subscriptions, and from
+ * in-process producers through the ingress ring buffer; each is journaled, applied to the venue book and republished
+ * as Golden BBO and depth. Aeron fragments are handled straight out of the term buffer, without a hop through the
+ * ring buffer, since both sources are drained on the same thread.
+ */
+public class TickerPlantLauncher implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TickerPlantLauncher.class);
     private static final int RING_BUFFER_CAPACITY = 1024 * 1024; // 1MB, adjustable
-    private static final int VENUE_TICK_MESSAGE_TYPE = BitUtil.align(BitUtil.SIZE_OF_INT, BitUtil.CACHE_LINE_LENGTH); // Custom msg type for ring buffer
+    public static final int VENUE_TICK_MESSAGE_TYPE = BitUtil.align(BitUtil.SIZE_OF_INT, BitUtil.CACHE_LINE_LENGTH); // Custom msg type for ring buffer
 
     private final ManyToOneRingBuffer ingressQueue;
     private final Journaler journaler;
     private final Aggregator aggregator;
+    private final OrderBookBuilder orderBookBuilder;
+    private final VenueSequenceTracker venueSequenceTracker;
+    private final AgentRunner allocatorRunner;
+    private final JournalFlusher journalFlusher;
+    private final AgentRunner flusherRunner;
+    private final Path journalDir;
+    private AgentRunner replayRunner;
+    private long recoveredTicks;
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
     private final VenueTickDecoder venueTickDecoder = new VenueTickDecoder();
-    private final UnsafeBuffer tempBuffer = new UnsafeBuffer(new byte[1024]); // Temp for polling
+    private final VenueHeartbeatDecoder venueHeartbeatDecoder = new VenueHeartbeatDecoder();
+    private final MessageHandler ingressHandler = this::handleMessage;
+    private final FragmentHandler fragmentHandler = this::onFragment;
+    private final int readBatchSize;
+    private Subscription[] subscriptions = new Subscription[0];
 
-    public TickerPlantLauncher(Publication goldenPublication, CachedClock clock, String journalPath) {
+    public TickerPlantLauncher(Publication goldenPublication, Publication orderBookPublication, CachedClock clock, String journalDir) {
+        this(goldenPublication, orderBookPublication, clock, journalDir, Integer.getInteger("tickerplant.ingress.batchSize", 10));
+    }
+
+    public TickerPlantLauncher(Publication goldenPublication, Publication orderBookPublication, CachedClock clock, String journalDir, int readBatchSize) {
+        this(goldenPublication, orderBookPublication, null, clock, journalDir, readBatchSize);
+    }
+
+    /**
+     * -Dtickerplant.venue.staleMillis and -Dtickerplant.venue.silenceMillis set when a venue quote, or a venue that
+     * has stopped ticking and heartbeating, is dropped from the Golden BBO and depth.
+     * -Dtickerplant.crossedPolicy picks the {@link CrossedMarketPolicy}.
+     *
+     * @param venueControlPublication where venue refresh requests go after a sequence gap, null to only count gaps
+     * @param readBatchSize           most ring buffer messages handled per duty cycle
+     */
+    public TickerPlantLauncher(Publication goldenPublication,
+                               Publication orderBookPublication,
+                               Publication venueControlPublication,
+                               CachedClock clock,
+                               String journalDir,
+                               int readBatchSize) {
+        this.readBatchSize = readBatchSize;
         this.ingressQueue = new ManyToOneRingBuffer(new UnsafeBuffer(ByteBuffer.allocateDirect(RING_BUFFER_CAPACITY + RingBufferDescriptor.TRAILER_LENGTH)));
-        this.journaler = new Journaler(journalPath);
-        this.aggregator = new Aggregator(goldenPublication, clock);
+        EpochNanoClock epochClock = new SystemEpochNanoClock();
+        this.aggregator = new Aggregator(
+                goldenPublication,
+                clock,
+                epochClock,
+                TimeUnit.MILLISECONDS.toNanos(Long.getLong("tickerplant.venue.staleMillis", 10_000L)),
+                TimeUnit.MILLISECONDS.toNanos(Long.getLong("tickerplant.venue.silenceMillis", 2_000L)),
+                CrossedMarketPolicy.valueOf(System.getProperty("tickerplant.crossedPolicy", CrossedMarketPolicy.EXCLUDE_VENUE.name())));
+        this.orderBookBuilder = new OrderBookBuilder(
+                aggregator.venueBook(), orderBookPublication, clock, epochClock, OrderBookBuilder.DEFAULT_SNAPSHOT_INTERVAL_NANOS);
+        aggregator.onExpiry(orderBookBuilder::onBookUpdate);
+        this.venueSequenceTracker = new VenueSequenceTracker(
+                venueControlPublication,
+                clock,
+                epochClock,
+                VenueSequenceTracker.DEFAULT_REFRESH_INTERVAL_NANOS);
+        this.journalDir = Paths.get(journalDir);
+        recover(this.journalDir);
+        JournalSegmentAllocator segmentAllocator = new JournalSegmentAllocator(this.journalDir, Journaler.DEFAULT_SEGMENT_SIZE);
+        this.journaler = new Journaler(
+                journalDir,
+                Journaler.DEFAULT_SEGMENT_SIZE,
+                Journaler.DEFAULT_ROLL_INTERVAL_NANOS,
+                new SystemEpochNanoClock(),
+                segmentAllocator);
+        this.allocatorRunner = start(segmentAllocator);
+        this.journalFlusher = journalFlusher(journalDir, journaler.segmentIndex());
+        this.flusherRunner = journalFlusher != null ? start(journalFlusher) : null;
+    }
+
+    /**
+     * Rebuilds the venue books from the journal tail before any live tick is taken, straight off the mapped
+     * segments. -Dtickerplant.recovery.windowSeconds bounds how far back the scan starts.
+     */
+    private void recover(Path journalDir) {
+        if (!Files.isDirectory(journalDir)) {
+            return;
+        }
+        long windowNanos = TimeUnit.SECONDS.toNanos(Long.getLong("tickerplant.recovery.windowSeconds", 3600L));
+        long start = System.nanoTime();
+        try (JournalReader reader = new JournalReader(journalDir)) {
+            if (reader.seekToTimestamp(new SystemEpochNanoClock().nanoTime() - windowNanos)) {
+                while (reader.poll(this::restoreFrame, 4096) > 0) {
+                    // drain to the tail
+                }
+            }
+            orderBookBuilder.rebuildAll();
+            LOGGER.info("Recovered {} venue ticks from {} in {} us, torn frames {}",
+                    recoveredTicks, journalDir, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), reader.tornFrames());
+        }
+    }
+
+    private void restoreFrame(long sequence, long timestampNanos, int templateId, DirectBuffer buffer, int offset, int length) {
+        if (templateId == VenueTickDecoder.TEMPLATE_ID) {
+            headerDecoder.wrap(buffer, offset);
+            venueTickDecoder.wrap(buffer, offset + headerDecoder.encodedLength(), headerDecoder.blockLength(), headerDecoder.version());
+            if (aggregator.restore(venueTickDecoder, timestampNanos)) {
+                venueSequenceTracker.restore(venueTickDecoder.venueIdRaw(), venueTickDecoder.venueSeqNum());
+                recoveredTicks++;
+            }
+        }
+    }
+
+    /**
+     * The flusher, run on its own agent so segment preallocation never holds up a flush, or null when there is none.
+     * -Dtickerplant.journal.flushPolicy=NONE|PERIODIC|GROUP_COMMIT, -Dtickerplant.journal.flushIntervalMicros,
+     * -Dtickerplant.journal.groupCommitMessages
+     */
+    private static JournalFlusher journalFlusher(String journalDir, long segmentIndex) {
+        FlushPolicy policy = FlushPolicy.valueOf(System.getProperty("tickerplant.journal.flushPolicy", FlushPolicy.NONE.name()));
+        if (policy == FlushPolicy.NONE) {
+            return null;
+        }
+        return new JournalFlusher(
+                Paths.get(journalDir),
+                segmentIndex,
+                policy,
+                TimeUnit.MICROSECONDS.toNanos(Long.getLong("tickerplant.journal.flushIntervalMicros", 1_000L)),
+                Integer.getInteger("tickerplant.journal.groupCommitMessages", 64),
+                new SystemEpochNanoClock());
+    }
+
+    private static AgentRunner start(Worker journalAgent) {
+        AgentRunner runner = new AgentRunner(new BackoffIdleStrategy(), Throwable::printStackTrace, null, journalAgent);
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+
+    /**
+     * Serves journal replays on their own thread, -Dtickerplant.replay.maxSessions bounds concurrent sessions.
+     */
+    public void startReplayServer(Aeron aeron) {
+        JournalReplayServer replayServer = new JournalReplayServer(
+                aeron,
+                journalDir,
+                new SystemEpochNanoClock(),
+                Integer.getInteger("tickerplant.replay.maxSessions", JournalReplayServer.DEFAULT_MAX_SESSIONS));
+        replayRunner = new AgentRunner(new BackoffIdleStrategy(), Throwable::printStackTrace, null, replayServer);
+        AgentRunner.startOnThread(replayRunner);
+    }
+
+    /**
+     * The journal flusher, for its counters, or null when -Dtickerplant.journal.flushPolicy is NONE.
+     */
+    public JournalFlusher getJournalFlusher() {
+        return journalFlusher;
     }
 
     public ManyToOneRingBuffer getIngressQueue() {
         return ingressQueue;
     }
 
-    public void run() {
-        IdleStrategy idleStrategy = new BackoffIdleStrategy();
-        while (true) {
-            int workCount = ingressQueue.read(this::handleMessage, 10);
-            idleStrategy.idle(workCount);
+    /**
+     * Takes venue ticks published by a feed handler; call before the plant's agent starts.
+     */
+    public void addSubscription(Subscription subscription) {
+        subscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        subscriptions[subscriptions.length - 1] = subscription;
+    }
+
+    @Override
+    public int doWork() {
+        int workCount = pollSubscriptions();
+        workCount += pollIngress();
+        workCount += aggregator.doWork();
+        workCount += venueSequenceTracker.doWork();
+        workCount += orderBookBuilder.doWork();
+        return workCount;
+    }
+
+    private int pollSubscriptions() {
+        int fragments = 0;
+        for (Subscription subscription : subscriptions) {
+            fragments += subscription.poll(fragmentHandler, readBatchSize);
         }
+        return fragments;
+    }
+
+    public int pollIngress() {
+        return ingressQueue.read(ingressHandler, readBatchSize);
     }
 
-    private void handleMessage(int msgTypeId, DirectBuffer buffer, int index, int length) {
+    /**
+     * Journals and decodes in place on the ring buffer slice, which stays valid until this returns.
+     */
+    void handleMessage(int msgTypeId, DirectBuffer buffer, int index, int length) {
         if (msgTypeId == VENUE_TICK_MESSAGE_TYPE) {
-            // Copy to temp for decoding (if needed)
-            tempBuffer.putBytes(0, buffer, index, length);
-
-            // Journal the raw message first for durability
-            journaler.write(tempBuffer, 0, length);
-
-            // Decode and process
-            headerDecoder.wrap(tempBuffer, 0);
-            int templateId = headerDecoder.templateId();
-            if (templateId == VenueTickDecoder.TEMPLATE_ID) {
-                venueTickDecoder.wrap(tempBuffer, headerDecoder.encodedLength(), headerDecoder.blockLength(), headerDecoder.version());
-                aggregator.onVenueTick(venueTickDecoder);
+            onMessage(buffer, index, length);
+        }
+    }
+
+    private void onFragment(DirectBuffer buffer, int offset, int length, Header header) {
+        onMessage(buffer, offset, length);
+    }
+
+    private void onMessage(DirectBuffer buffer, int index, int length) {
+        headerDecoder.wrap(buffer, index);
+        int templateId = headerDecoder.templateId();
+
+        // Journal the raw message first for durability
+        journaler.write(buffer, index, length, templateId);
+
+        // Decode and process
+        if (templateId == VenueTickDecoder.TEMPLATE_ID) {
+            venueTickDecoder.wrap(buffer, index + headerDecoder.encodedLength(), headerDecoder.blockLength(), headerDecoder.version());
+            int venueId = venueTickDecoder.venueIdRaw();
+            int sequence = venueSequenceTracker.onTick(venueId, venueTickDecoder.venueSeqNum());
+            if (sequence == VenueSequenceTracker.DUPLICATE) {
+                return;
+            }
+            if (sequence == VenueSequenceTracker.GAP) {
+                aggregator.onVenueGap(venueId);
             }
+            aggregator.onVenueTick(venueTickDecoder);
+            orderBookBuilder.onBookUpdate((int) venueTickDecoder.securityId());
+        } else if (templateId == VenueHeartbeatDecoder.TEMPLATE_ID) {
+            venueHeartbeatDecoder.wrap(buffer, index + headerDecoder.encodedLength(), headerDecoder.blockLength(), headerDecoder.version());
+            if (venueSequenceTracker.onHeartbeat(venueHeartbeatDecoder.venueIdRaw(), venueHeartbeatDecoder.venueSeqNum()) == VenueSequenceTracker.GAP) {
+                aggregator.onVenueGap(venueHeartbeatDecoder.venueIdRaw());
+            }
+            aggregator.onVenueHeartbeat(venueHeartbeatDecoder);
         }
     }
 
     public void shutdown() {
+        if (replayRunner != null) {
+            replayRunner.close();
+        }
+        if (flusherRunner != null) {
+            flusherRunner.close();
+        }
+        allocatorRunner.close();
         journaler.close();
     }
+
+    @Override
+    public void onClose() {
+        shutdown();
+    }
+
+    @Override
+    public String roleName() {
+        return "ticker-plant";
+    }
+
+    /**
+     * -Dtickerplant.journal.dir, -Dtickerplant.cpu pins the duty cycle to a core (-1 lets the affinity library pick).
+     */
+    public static void main(String[] args) {
+        final String journalDir = System.getProperty("tickerplant.journal.dir", "journal");
+        final int cpuId = Integer.getInteger("tickerplant.cpu", -1);
+        LOGGER.info("Application Starting Up");
+        try (
+                Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(AeronConfigs.AERON_LIVE_DIR));
+                Publication goldenTickPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_GOLDEN_TICK.getCode());
+                Publication orderBookPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_ORDER_BOOK.getCode());
+                Publication venueControlPub = aeron.addExclusivePublication(AeronConfigs.LIVE_CHANNEL, StreamId.CONTROL_VENUE_TICK.getCode());
+                Subscription venueTickSub = aeron.addSubscription(AeronConfigs.LIVE_CHANNEL, StreamId.DATA_VENUE_TICK.getCode())
+        ) {
+            final TickerPlantLauncher tickerPlant = new TickerPlantLauncher(
+                    goldenTickPub,
+                    orderBookPub,
+                    venueControlPub,
+                    new CachedClock(),
+                    journalDir,
+                    Integer.getInteger("tickerplant.ingress.batchSize", 10));
+            tickerPlant.addSubscription(venueTickSub);
+            tickerPlant.startReplayServer(aeron);
+            try (
+                    AgentRunner agentRunner = new AgentRunner(new BusySpinIdleStrategy(),
+                            Throwable::printStackTrace,
+                            null,
+                            tickerPlant);
+                    var barrier = new ShutdownSignalBarrier()
+            ) {
+                new Thread(() -> AgentAffinityLocker.pin(agentRunner, cpuId), tickerPlant.roleName()).start();
+                LOGGER.info("Started {} journal={}", tickerPlant.roleName(), journalDir);
+                barrier.await();
+                LOGGER.info("Shutting down {}", tickerPlant.roleName());
+            }
+        }
+        LOGGER.info("Application Stopped");
+    }
 }
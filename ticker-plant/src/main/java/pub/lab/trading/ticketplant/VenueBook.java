@@ -0,0 +1,335 @@
+package pub.lab.trading.ticketplant;
+
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import play.lab.model.sbe.VenueID;
+
+import java.util.Arrays;
+
+/**
+ * Top of book per venue for every security, in one flat off-heap block, plus the cross-venue best bid/offer.
+ * <p>
+ * Each security owns {@code MAX_VENUES + 1} cache lines: a BBO line followed by one line per venue id, so a tick
+ * touches two lines at most. The best bid and ask are maintained incrementally; a side is only rescanned when the
+ * venue currently holding the best price worsens it. A price of zero means the venue has no price on that side.
+ * <p>
+ * Every venue line carries the time it was last updated, and the BBO line the update time of the quote holding each
+ * side, so staleness on the hot path is one compare against the BBO line. A venue quote older than the staleness
+ * threshold, from a venue that has gone silent (no tick or heartbeat within the silence timeout), or written before
+ * a sequence gap on its venue ({@link #suspect}), is left out of the BBO; {@link #expire} drops such a quote from a
+ * security's BBO once it ages out between ticks.
+ * Single writer, owned by the ticker plant duty cycle.
+ */
+public class VenueBook {
+    public static final int MAX_VENUES = 8;
+    public static final int DEFAULT_MAX_SECURITIES = 256;
+    public static final short NO_VENUE = VenueID.NULL_VAL.value();
+
+    // venue line
+    private static final int BID_PRICE_OFFSET = 0;
+    private static final int BID_SIZE_OFFSET = 8;
+    private static final int ASK_PRICE_OFFSET = 16;
+    private static final int ASK_SIZE_OFFSET = 24;
+    private static final int UPDATE_NANOS_OFFSET = 32;
+
+    // BBO line
+    private static final int BEST_BID_OFFSET = 0;
+    private static final int BEST_BID_VENUE_OFFSET = 8;
+    private static final int BEST_ASK_OFFSET = 16;
+    private static final int BEST_ASK_VENUE_OFFSET = 24;
+    private static final int BEST_BID_NANOS_OFFSET = 32;
+    private static final int BEST_ASK_NANOS_OFFSET = 40;
+
+    private static final int LINE_LENGTH = BitUtil.CACHE_LINE_LENGTH;
+    private static final int SECURITY_STRIDE = (MAX_VENUES + 1) * LINE_LENGTH;
+
+    // the venue ids the schema defines, the only ones a GoldenTick can name
+    private static final boolean[] DEFINED_VENUES = new boolean[MAX_VENUES];
+
+    static {
+        for (VenueID venueId : VenueID.values()) {
+            if (venueId != VenueID.NULL_VAL && venueId.value() < MAX_VENUES) {
+                DEFINED_VENUES[venueId.value()] = true;
+            }
+        }
+    }
+
+    private final int maxSecurities;
+    private final long staleNanos;
+    private final long silenceNanos;
+    private final UnsafeBuffer book;
+    private final long[] lastHeardNanos = new long[MAX_VENUES];
+    private final boolean[] heard = new boolean[MAX_VENUES];
+    private final boolean[] silent = new boolean[MAX_VENUES];
+    // quotes updated before this are suspect, per venue
+    private final long[] suspectBeforeNanos = new long[MAX_VENUES];
+
+    public VenueBook() {
+        this(DEFAULT_MAX_SECURITIES, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param staleNanos   age after which a venue quote is left out of the BBO, Long.MAX_VALUE never
+     * @param silenceNanos time without a tick or heartbeat after which all of a venue's quotes are left out
+     */
+    public VenueBook(final int maxSecurities, final long staleNanos, final long silenceNanos) {
+        this.maxSecurities = maxSecurities;
+        this.staleNanos = staleNanos;
+        this.silenceNanos = silenceNanos;
+        this.book = new UnsafeBuffer(BufferUtil.allocateDirectAligned(maxSecurities * SECURITY_STRIDE, LINE_LENGTH));
+        Arrays.fill(suspectBeforeNanos, Long.MIN_VALUE);
+        for (int securityId = 0; securityId < maxSecurities; securityId++) {
+            int bbo = bboOffset(securityId);
+            book.putLong(bbo + BEST_BID_VENUE_OFFSET, NO_VENUE);
+            book.putLong(bbo + BEST_ASK_VENUE_OFFSET, NO_VENUE);
+        }
+    }
+
+    public boolean accepts(final long securityId, final int venueId) {
+        return securityId >= 0 && securityId < maxSecurities && isDefined(venueId);
+    }
+
+    /**
+     * True for a {@link VenueID} the book has a slot for; any other raw id is rejected rather than published.
+     */
+    public static boolean isDefined(final int venueId) {
+        return venueId >= 0 && venueId < MAX_VENUES && DEFINED_VENUES[venueId];
+    }
+
+    /**
+     * Stores the venue's top of book, stamped {@code nowNanos}, and brings the BBO up to date. Callers check
+     * {@link #accepts} first and report the venue as heard.
+     */
+    public void update(final int securityId, final int venueId,
+                       final long bidPrice, final long bidSize,
+                       final long askPrice, final long askSize,
+                       final long nowNanos) {
+        int venue = venueOffset(securityId, venueId);
+        book.putLong(venue + BID_PRICE_OFFSET, bidPrice);
+        book.putLong(venue + BID_SIZE_OFFSET, bidSize);
+        book.putLong(venue + ASK_PRICE_OFFSET, askPrice);
+        book.putLong(venue + ASK_SIZE_OFFSET, askSize);
+        book.putLong(venue + UPDATE_NANOS_OFFSET, nowNanos);
+
+        int bbo = bboOffset(securityId);
+        long bestBid = book.getLong(bbo + BEST_BID_OFFSET);
+        long bestBidVenue = book.getLong(bbo + BEST_BID_VENUE_OFFSET);
+        if (bestBidVenue != NO_VENUE && nowNanos - book.getLong(bbo + BEST_BID_NANOS_OFFSET) > staleNanos) {
+            rescanBid(securityId, nowNanos);
+        } else if (bidPrice > bestBid) {
+            setBestBid(bbo, bidPrice, venueId, nowNanos);
+        } else if (bestBidVenue == venueId) {
+            if (bidPrice < bestBid) {
+                rescanBid(securityId, nowNanos);
+            } else {
+                book.putLong(bbo + BEST_BID_NANOS_OFFSET, nowNanos);
+            }
+        }
+
+        long bestAsk = book.getLong(bbo + BEST_ASK_OFFSET);
+        long bestAskVenue = book.getLong(bbo + BEST_ASK_VENUE_OFFSET);
+        if (bestAskVenue != NO_VENUE && nowNanos - book.getLong(bbo + BEST_ASK_NANOS_OFFSET) > staleNanos) {
+            rescanAsk(securityId, nowNanos);
+        } else if (askPrice > 0 && (bestAskVenue == NO_VENUE || askPrice < bestAsk)) {
+            setBestAsk(bbo, askPrice, venueId, nowNanos);
+        } else if (bestAskVenue == venueId) {
+            if (askPrice <= 0 || askPrice > bestAsk) {
+                rescanAsk(securityId, nowNanos);
+            } else {
+                book.putLong(bbo + BEST_ASK_NANOS_OFFSET, nowNanos);
+            }
+        }
+    }
+
+    /**
+     * Records that a venue was heard from, by a tick or a heartbeat, bringing it back if it had gone silent.
+     */
+    public void heartbeat(final int venueId, final long nowNanos) {
+        lastHeardNanos[venueId] = nowNanos;
+        heard[venueId] = true;
+        silent[venueId] = false;
+    }
+
+    /**
+     * Marks venues not heard from within the silence timeout as silent and returns them as a bit mask of venue ids,
+     * only those that went silent on this call. Follow with {@link #expire} for each security.
+     */
+    public int expireVenues(final long nowNanos) {
+        int newlySilent = 0;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            if (heard[v] && !silent[v] && nowNanos - lastHeardNanos[v] > silenceNanos) {
+                silent[v] = true;
+                newlySilent |= 1 << v;
+            }
+        }
+        return newlySilent;
+    }
+
+    /**
+     * Marks every quote the venue has given so far as suspect, after a sequence gap; each security's quote is
+     * trusted again once the venue updates it. Follow with {@link #expire} for each security.
+     */
+    public void suspect(final int venueId, final long nowNanos) {
+        suspectBeforeNanos[venueId] = nowNanos;
+    }
+
+    /**
+     * Rescans a side whose best quote has gone stale, suspect or whose venue is silent. Returns true when the BBO
+     * changed.
+     */
+    public boolean expire(final int securityId, final long nowNanos) {
+        int bbo = bboOffset(securityId);
+        boolean changed = false;
+        long bestBidVenue = book.getLong(bbo + BEST_BID_VENUE_OFFSET);
+        if (bestBidVenue != NO_VENUE && isStale(securityId, (int) bestBidVenue, nowNanos)) {
+            rescanBid(securityId, nowNanos);
+            changed = true;
+        }
+        long bestAskVenue = book.getLong(bbo + BEST_ASK_VENUE_OFFSET);
+        if (bestAskVenue != NO_VENUE && isStale(securityId, (int) bestAskVenue, nowNanos)) {
+            rescanAsk(securityId, nowNanos);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * True when the venue's quote for the security must not be used: too old, given before a gap, or the venue is
+     * silent.
+     */
+    public boolean isStale(final int securityId, final int venueId, final long nowNanos) {
+        long updateNanos = book.getLong(venueOffset(securityId, venueId) + UPDATE_NANOS_OFFSET);
+        return silent[venueId] || nowNanos - updateNanos > staleNanos || updateNanos < suspectBeforeNanos[venueId];
+    }
+
+    /**
+     * Best bid venue leaving out stale quotes and the venues in {@code excludedVenues}, a bit mask of venue ids;
+     * {@link #NO_VENUE} when none is left. Does not change the BBO.
+     */
+    public short bestBidVenueExcluding(final int securityId, final int excludedVenues, final long nowNanos) {
+        long bestBid = 0;
+        short bestBidVenue = NO_VENUE;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            long bid = book.getLong(venueOffset(securityId, v) + BID_PRICE_OFFSET);
+            if (bid > bestBid && (excludedVenues & (1 << v)) == 0 && !isStale(securityId, v, nowNanos)) {
+                bestBid = bid;
+                bestBidVenue = (short) v;
+            }
+        }
+        return bestBidVenue;
+    }
+
+    /**
+     * As {@link #bestBidVenueExcluding} for the ask.
+     */
+    public short bestAskVenueExcluding(final int securityId, final int excludedVenues, final long nowNanos) {
+        long bestAsk = 0;
+        short bestAskVenue = NO_VENUE;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            long ask = book.getLong(venueOffset(securityId, v) + ASK_PRICE_OFFSET);
+            if (ask > 0 && (bestAskVenue == NO_VENUE || ask < bestAsk)
+                    && (excludedVenues & (1 << v)) == 0 && !isStale(securityId, v, nowNanos)) {
+                bestAsk = ask;
+                bestAskVenue = (short) v;
+            }
+        }
+        return bestAskVenue;
+    }
+
+    public long updateNanos(final int securityId, final int venueId) {
+        return book.getLong(venueOffset(securityId, venueId) + UPDATE_NANOS_OFFSET);
+    }
+
+    public boolean isSilent(final int venueId) {
+        return silent[venueId];
+    }
+
+    private void setBestBid(final int bbo, final long price, final long venueId, final long updateNanos) {
+        book.putLong(bbo + BEST_BID_OFFSET, price);
+        book.putLong(bbo + BEST_BID_VENUE_OFFSET, venueId);
+        book.putLong(bbo + BEST_BID_NANOS_OFFSET, updateNanos);
+    }
+
+    private void setBestAsk(final int bbo, final long price, final long venueId, final long updateNanos) {
+        book.putLong(bbo + BEST_ASK_OFFSET, price);
+        book.putLong(bbo + BEST_ASK_VENUE_OFFSET, venueId);
+        book.putLong(bbo + BEST_ASK_NANOS_OFFSET, updateNanos);
+    }
+
+    private void rescanBid(final int securityId, final long nowNanos) {
+        long bestBid = 0;
+        long bestBidVenue = NO_VENUE;
+        long bestBidNanos = 0;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            int venue = venueOffset(securityId, v);
+            long bid = book.getLong(venue + BID_PRICE_OFFSET);
+            if (bid > bestBid && !isStale(securityId, v, nowNanos)) {
+                bestBid = bid;
+                bestBidVenue = v;
+                bestBidNanos = book.getLong(venue + UPDATE_NANOS_OFFSET);
+            }
+        }
+        setBestBid(bboOffset(securityId), bestBid, bestBidVenue, bestBidNanos);
+    }
+
+    private void rescanAsk(final int securityId, final long nowNanos) {
+        long bestAsk = 0;
+        long bestAskVenue = NO_VENUE;
+        long bestAskNanos = 0;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            int venue = venueOffset(securityId, v);
+            long ask = book.getLong(venue + ASK_PRICE_OFFSET);
+            if (ask > 0 && (bestAskVenue == NO_VENUE || ask < bestAsk) && !isStale(securityId, v, nowNanos)) {
+                bestAsk = ask;
+                bestAskVenue = v;
+                bestAskNanos = book.getLong(venue + UPDATE_NANOS_OFFSET);
+            }
+        }
+        setBestAsk(bboOffset(securityId), bestAsk, bestAskVenue, bestAskNanos);
+    }
+
+    public long bestBid(final int securityId) {
+        return book.getLong(bboOffset(securityId) + BEST_BID_OFFSET);
+    }
+
+    public short bestBidVenue(final int securityId) {
+        return (short) book.getLong(bboOffset(securityId) + BEST_BID_VENUE_OFFSET);
+    }
+
+    public long bestAsk(final int securityId) {
+        return book.getLong(bboOffset(securityId) + BEST_ASK_OFFSET);
+    }
+
+    public short bestAskVenue(final int securityId) {
+        return (short) book.getLong(bboOffset(securityId) + BEST_ASK_VENUE_OFFSET);
+    }
+
+    public long bidPrice(final int securityId, final int venueId) {
+        return book.getLong(venueOffset(securityId, venueId) + BID_PRICE_OFFSET);
+    }
+
+    public long bidSize(final int securityId, final int venueId) {
+        return book.getLong(venueOffset(securityId, venueId) + BID_SIZE_OFFSET);
+    }
+
+    public long askPrice(final int securityId, final int venueId) {
+        return book.getLong(venueOffset(securityId, venueId) + ASK_PRICE_OFFSET);
+    }
+
+    public long askSize(final int securityId, final int venueId) {
+        return book.getLong(venueOffset(securityId, venueId) + ASK_SIZE_OFFSET);
+    }
+
+    public int maxSecurities() {
+        return maxSecurities;
+    }
+
+    private static int bboOffset(final int securityId) {
+        return securityId * SECURITY_STRIDE;
+    }
+
+    private static int venueOffset(final int securityId, final int venueId) {
+        return securityId * SECURITY_STRIDE + (venueId + 1) * LINE_LENGTH;
+    }
+}
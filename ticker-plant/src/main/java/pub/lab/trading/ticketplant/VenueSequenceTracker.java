@@ -0,0 +1,232 @@
+package pub.lab.trading.ticketplant;
+
+import io.aeron.Publication;
+import org.agrona.concurrent.EpochNanoClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.VenueID;
+import play.lab.model.sbe.VenueRefreshRequestEncoder;
+import pub.lab.trading.common.lifecycle.Worker;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@code venueSeqNum} per venue on the ingest path. Feed handlers number a venue's ticks and heartbeats from
+ * one sequence across all securities, so the check is one compare against the last number seen.
+ * <p>
+ * A jump forward is a gap: the caller marks the venue's quotes suspect and this asks the feed handler, with a
+ * {@code VenueRefreshRequest} on the venue control stream, to resend the venue's top of book for every security.
+ * Requests go out from {@link #doWork()}, at most one per venue per refresh interval, gaps in between widen the
+ * outstanding range. A number at or below the last one is a duplicate and dropped, except a restart at 1, which is
+ * a venue session reset and handled as a gap of unknown size.
+ */
+public class VenueSequenceTracker implements Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VenueSequenceTracker.class);
+
+    public static final int IN_SEQUENCE = 0;
+    public static final int GAP = 1;
+    public static final int DUPLICATE = 2;
+
+    public static final long DEFAULT_REFRESH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final int MAX_VENUES = VenueBook.MAX_VENUES;
+
+    private final Publication controlPublication;
+    private final CachedClock clock;
+    private final EpochNanoClock epochClock;
+    private final long refreshIntervalNanos;
+    private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(128));
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final VenueRefreshRequestEncoder refreshEncoder = new VenueRefreshRequestEncoder();
+
+    private final long[] lastSeqNums = new long[MAX_VENUES];
+    private final boolean[] seen = new boolean[MAX_VENUES];
+
+    // outstanding refresh per venue
+    private final boolean[] refreshPending = new boolean[MAX_VENUES];
+    private final long[] refreshFromSeqNums = new long[MAX_VENUES];
+    private final long[] refreshToSeqNums = new long[MAX_VENUES];
+    private final long[] lastRefreshNanos = new long[MAX_VENUES];
+    private final boolean[] refreshed = new boolean[MAX_VENUES];
+    private int pendingRefreshes;
+    private long nextCorrelationId = 1;
+
+    private final long[] gaps = new long[MAX_VENUES];
+    private final long[] missedSeqNums = new long[MAX_VENUES];
+    private final long[] maxGaps = new long[MAX_VENUES];
+    private final long[] duplicates = new long[MAX_VENUES];
+    private final long[] resets = new long[MAX_VENUES];
+    private long refreshRequests;
+    private long offerFailures;
+
+    /**
+     * @param controlPublication venue control stream the feed handlers listen on, null to only detect and count
+     */
+    public VenueSequenceTracker(final Publication controlPublication,
+                                final CachedClock clock,
+                                final EpochNanoClock epochClock,
+                                final long refreshIntervalNanos) {
+        this.controlPublication = controlPublication;
+        this.clock = clock;
+        this.epochClock = epochClock;
+        this.refreshIntervalNanos = refreshIntervalNanos;
+    }
+
+    /**
+     * Checks a tick's sequence number; returns {@link #IN_SEQUENCE}, {@link #GAP} or {@link #DUPLICATE}.
+     */
+    public int onTick(final int venueId, final long seqNum) {
+        if (!VenueBook.isDefined(venueId)) {
+            return IN_SEQUENCE; // the venue book rejects it, and a refresh could not name it
+        }
+        if (!seen[venueId]) {
+            seen[venueId] = true;
+            lastSeqNums[venueId] = seqNum;
+            return IN_SEQUENCE;
+        }
+        long expected = lastSeqNums[venueId] + 1;
+        if (seqNum == expected) {
+            lastSeqNums[venueId] = seqNum;
+            return IN_SEQUENCE;
+        }
+        if (seqNum > expected) {
+            onGap(venueId, expected, seqNum - 1);
+            lastSeqNums[venueId] = seqNum;
+            return GAP;
+        }
+        if (seqNum == 1 && lastSeqNums[venueId] > 1) {
+            resets[venueId]++;
+            LOGGER.warn("Venue {} sequence reset after {}", venueId, lastSeqNums[venueId]);
+            requestRefresh(venueId, 1, 0);
+            lastSeqNums[venueId] = seqNum;
+            return GAP;
+        }
+        duplicates[venueId]++;
+        return DUPLICATE;
+    }
+
+    /**
+     * Checks a heartbeat, which carries the last number the venue sent: anything past the last one seen was lost.
+     * Returns {@link #IN_SEQUENCE} or {@link #GAP}.
+     */
+    public int onHeartbeat(final int venueId, final long lastSentSeqNum) {
+        if (!VenueBook.isDefined(venueId) || !seen[venueId] || lastSentSeqNum <= lastSeqNums[venueId]) {
+            return IN_SEQUENCE;
+        }
+        onGap(venueId, lastSeqNums[venueId] + 1, lastSentSeqNum);
+        lastSeqNums[venueId] = lastSentSeqNum;
+        return GAP;
+    }
+
+    /**
+     * Seeds the last number seen from a journaled tick during recovery, so missed ticks while the plant was down
+     * show up as a gap on the first live one.
+     */
+    public void restore(final int venueId, final long seqNum) {
+        if (VenueBook.isDefined(venueId)) {
+            seen[venueId] = true;
+            lastSeqNums[venueId] = seqNum;
+        }
+    }
+
+    private void onGap(final int venueId, final long fromSeqNum, final long toSeqNum) {
+        long size = toSeqNum - fromSeqNum + 1;
+        gaps[venueId]++;
+        missedSeqNums[venueId] += size;
+        maxGaps[venueId] = Math.max(maxGaps[venueId], size);
+        LOGGER.debug("Venue {} gap {}..{} ({} missed)", venueId, fromSeqNum, toSeqNum, size);
+        requestRefresh(venueId, fromSeqNum, toSeqNum);
+    }
+
+    private void requestRefresh(final int venueId, final long fromSeqNum, final long toSeqNum) {
+        if (!refreshPending[venueId]) {
+            refreshPending[venueId] = true;
+            refreshFromSeqNums[venueId] = fromSeqNum;
+            refreshToSeqNums[venueId] = toSeqNum;
+            pendingRefreshes++;
+        } else {
+            refreshFromSeqNums[venueId] = Math.min(refreshFromSeqNums[venueId], fromSeqNum);
+            refreshToSeqNums[venueId] = toSeqNum == 0 || refreshToSeqNums[venueId] == 0 ? 0 : Math.max(refreshToSeqNums[venueId], toSeqNum);
+        }
+    }
+
+    @Override
+    public int doWork() {
+        if (pendingRefreshes == 0) {
+            return 0;
+        }
+        long now = clock.nanoTime();
+        int workCount = 0;
+        for (int v = 0; v < MAX_VENUES; v++) {
+            if (!refreshPending[v] || (refreshed[v] && now - lastRefreshNanos[v] < refreshIntervalNanos)) {
+                continue;
+            }
+            if (controlPublication != null && !sendRefresh(v)) {
+                offerFailures++;
+                continue; // retried next duty cycle
+            }
+            refreshPending[v] = false;
+            refreshed[v] = true;
+            lastRefreshNanos[v] = now;
+            pendingRefreshes--;
+            workCount++;
+        }
+        return workCount;
+    }
+
+    private boolean sendRefresh(final int venueId) {
+        refreshEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder)
+                .tsNanos(epochClock.nanoTime())
+                .correlationId(nextCorrelationId)
+                .venueId(VenueID.get((short) venueId))
+                .fromSeqNum(refreshFromSeqNums[venueId])
+                .toSeqNum(refreshToSeqNums[venueId]);
+        if (controlPublication.offer(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + refreshEncoder.encodedLength()) < 0) {
+            return false;
+        }
+        nextCorrelationId++;
+        refreshRequests++;
+        LOGGER.info("Requested refresh of venue {} for venueSeqNum {}..{}", venueId, refreshFromSeqNums[venueId], refreshToSeqNums[venueId]);
+        return true;
+    }
+
+    public long gaps(int venueId) {
+        return gaps[venueId];
+    }
+
+    /**
+     * Sequence numbers lost across all gaps; resets are not included, their size is unknown.
+     */
+    public long missedSeqNums(int venueId) {
+        return missedSeqNums[venueId];
+    }
+
+    public long maxGap(int venueId) {
+        return maxGaps[venueId];
+    }
+
+    public long duplicates(int venueId) {
+        return duplicates[venueId];
+    }
+
+    public long resets(int venueId) {
+        return resets[venueId];
+    }
+
+    public long refreshRequests() {
+        return refreshRequests;
+    }
+
+    public long offerFailures() {
+        return offerFailures;
+    }
+
+    @Override
+    public String roleName() {
+        return "TickPlant-VenueSequenceTracker";
+    }
+}
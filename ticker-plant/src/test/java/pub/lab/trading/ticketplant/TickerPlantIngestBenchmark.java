@@ -0,0 +1,159 @@
+package pub.lab.trading.ticketplant;
+
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import play.lab.model.sbe.MessageHeaderEncoder;
+import play.lab.model.sbe.VenueID;
+import play.lab.model.sbe.VenueTickEncoder;
+import pub.lab.trading.common.util.CachedClock;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest throughput of the ticker plant duty cycle: ring buffer read, journal append, decode, aggregate and depth
+ * build, per venue tick. {@code zeroCopy} is the current path; {@code copyToTemp} reproduces the old handler that
+ * copied every message into a temp buffer first, for comparison.
+ * <pre>
+ * mvn -pl ticker-plant test-compile exec:java -Dexec.mainClass=pub.lab.trading.ticketplant.TickerPlantIngestBenchmark -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-exports", "java.base/jdk.internal.misc=ALL-UNNAMED"})
+public class TickerPlantIngestBenchmark {
+    private static final int TICKS_PER_OP = 256;
+
+    @Param({"10", "64", "256"})
+    private int readBatchSize;
+
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private Publication goldenPublication;
+    private Publication orderBookPublication;
+    private File journalDir;
+    private TickerPlantLauncher launcher;
+    private MessageHandler copyingHandler;
+
+    private final UnsafeBuffer ticks = new UnsafeBuffer(ByteBuffer.allocateDirect(TICKS_PER_OP * 128));
+    private final int[] tickOffsets = new int[TICKS_PER_OP];
+    private final UnsafeBuffer tempBuffer = new UnsafeBuffer(new byte[1024]);
+    private final VenueTickEncoder encoder = new VenueTickEncoder();
+    private final long[] venueSeqNums = new long[4];
+    private int tickLength;
+
+    @Setup(Level.Trial)
+    public void startAeron() {
+        mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+                .threadingMode(ThreadingMode.SHARED)
+                .dirDeleteOnStart(true)
+                .dirDeleteOnShutdown(true));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+        // no subscribers: GoldenTick and depth offers fail fast, the benchmark measures the plant, not the driver
+        goldenPublication = aeron.addPublication("aeron:ipc", 9001);
+        orderBookPublication = aeron.addPublication("aeron:ipc", 9002);
+
+        MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+        for (int i = 0; i < TICKS_PER_OP; i++) {
+            tickOffsets[i] = i * 128;
+            long mid = 1_100_000L + (i % 7) * 10;
+            encoder.wrapAndApplyHeader(ticks, tickOffsets[i], headerEncoder)
+                    .venueId(VenueID.get((short) (1 + i % 3)))
+                    .securityId(i % 17)
+                    .venueTime(i)
+                    .ingressTime(i)
+                    .bidPrice(mid - 5 - i % 3)
+                    .bidSize(1_000_000)
+                    .askPrice(mid + 5 + i % 3)
+                    .askSize(1_000_000);
+            tickLength = MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startPlant() throws Exception {
+        journalDir = Files.createTempDirectory("ticker-plant-bench").toFile();
+        launcher = new TickerPlantLauncher(goldenPublication, orderBookPublication, new CachedClock(), journalDir.getPath(), readBatchSize);
+        copyingHandler = (msgTypeId, buffer, index, length) -> {
+            tempBuffer.putBytes(0, buffer, index, length);
+            launcher.handleMessage(msgTypeId, tempBuffer, 0, length);
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopPlant() {
+        launcher.shutdown();
+        IoUtil.delete(journalDir, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopAeron() {
+        aeron.close();
+        mediaDriver.close();
+    }
+
+    // venueSeqNum restamped per venue on every pass, so the plant sees an unbroken sequence
+    private void offerTicks() {
+        for (int i = 0; i < TICKS_PER_OP; i++) {
+            encoder.wrap(ticks, tickOffsets[i] + MessageHeaderEncoder.ENCODED_LENGTH).venueSeqNum(++venueSeqNums[1 + i % 3]);
+            launcher.getIngressQueue().write(TickerPlantLauncher.VENUE_TICK_MESSAGE_TYPE, ticks, tickOffsets[i], tickLength);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS_PER_OP)
+    public int zeroCopy() {
+        offerTicks();
+        int handled = 0;
+        int read;
+        while ((read = launcher.pollIngress()) > 0) {
+            handled += read;
+        }
+        return handled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS_PER_OP)
+    public int copyToTemp() {
+        offerTicks();
+        int handled = 0;
+        int read;
+        while ((read = launcher.getIngressQueue().read(copyingHandler, readBatchSize)) > 0) {
+            handled += read;
+        }
+        return handled;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TickerPlantIngestBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}